@@ -0,0 +1,101 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.service.AsyncMessageService;
+import com.tcs.edu.service.LogException;
+import com.tcs.edu.service.OrderedDistinctedMessageService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of many concurrent submitters each proceeding one message at a time, for a fixed duration.
+ * <code>async</code> runs every submitter as a chain of {@link AsyncMessageService} futures,
+ * each submitter resubmits from the completing drain as soon as its previous message is stored,
+ * so thousands of them need no threads.
+ * <code>sync</code> runs every submitter as a platform thread calling the service directly, for comparison.
+ * E.g. <code>java -cp target/benchmarks.jar com.tcs.edu.benchmark.AsyncServiceLoad async 10000 10</code>
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class AsyncServiceLoad {
+    private AsyncServiceLoad() {
+    }
+
+    /**
+     * @param args mode (<code>async</code> or <code>sync</code>), number of submitters and duration in seconds
+     */
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "async";
+        int submitters = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        OrderedDistinctedMessageService service = new OrderedDistinctedMessageService(
+                new TimestampMessageDecorator(), new InMemoryMessageRepositoryImpl());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder stored = new LongAdder();
+        long start = System.nanoTime();
+        String batching = "";
+        if ("async".equals(mode)) {
+            try (AsyncMessageService async = new AsyncMessageService(service,
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2))) {
+                List<CompletableFuture<Void>> chains = new ArrayList<>(submitters);
+                for (int i = 0; i < submitters; i++) {
+                    chains.add(submitLoop(async, i, deadline, stored));
+                }
+                CompletableFuture.allOf(chains.toArray(new CompletableFuture[0])).join();
+                batching = String.format(", %.1f submissions per batch",
+                        (double) async.getSubmissionCount() / async.getBatchCount());
+            }
+        } else {
+            List<Thread> threads = new ArrayList<>(submitters);
+            for (int i = 0; i < submitters; i++) {
+                int submitter = i;
+                Thread thread = new Thread(() -> {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            service.process(message(submitter));
+                            stored.increment();
+                        } catch (LogException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %,d submitters, %,d messages in %.1f s, %,.0f messages/s%s%n",
+                mode, submitters, stored.sum(), elapsed, stored.sum() / elapsed, batching);
+        System.out.println(service.getMetrics().snapshot());
+    }
+
+    /**
+     * @return future completed once the submitter stores its last message before the deadline
+     */
+    private static CompletableFuture<Void> submitLoop(AsyncMessageService async, int submitter, long deadline,
+                                                      LongAdder stored) {
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<UUID[]> submitted = async.submit(message(submitter));
+        return submitted.thenCompose(ids -> {
+            stored.increment();
+            return submitLoop(async, submitter, deadline, stored);
+        });
+    }
+
+    private static Message message(int submitter) {
+        return new Message(Severity.values()[submitter % 3], "Request of client " + submitter + " handled");
+    }
+}
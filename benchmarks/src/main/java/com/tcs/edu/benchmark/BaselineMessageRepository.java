@@ -0,0 +1,48 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.MessageRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The {@code BaselineMessageRepository} is the {@link HashMap} repository the in-memory one replaced,
+ * with every method synchronized so it survives concurrent writers. Kept as the reference of the comparison.
+ *
+ * @author Zakhar Starokozhev
+ */
+class BaselineMessageRepository implements MessageRepository {
+    private final Map<UUID, Message> messages = new HashMap<>();
+
+    @Override
+    public synchronized UUID create(Message message) {
+        message.setId(UUID.randomUUID());
+        messages.put(message.getId(), message);
+        return message.getId();
+    }
+
+    @Override
+    public synchronized Message findByPrimaryKey(UUID key) {
+        return messages.get(key);
+    }
+
+    @Override
+    public synchronized Collection<Message> findAll() {
+        return new ArrayList<>(messages.values());
+    }
+
+    /**
+     * Scans the whole store.
+     */
+    @Override
+    public synchronized Collection<Message> findAllBySeverity(Severity by) {
+        return messages.values().stream().filter(message -> message.getSeverity() == by).collect(toList());
+    }
+}
@@ -0,0 +1,53 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.MessageRepository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * The {@code CountingMessageRepository} keeps nothing but the count of created messages.
+ * Isolates the service cost from the storage one and keeps the heap flat on million-message batches.
+ *
+ * @author Zakhar Starokozhev
+ */
+class CountingMessageRepository implements MessageRepository {
+    private static final UUID ID = new UUID(0, 0);
+    private long count;
+
+    @Override
+    public UUID create(Message message) {
+        count++;
+        return ID;
+    }
+
+    @Override
+    public Message findByPrimaryKey(UUID key) {
+        return null;
+    }
+
+    @Override
+    public Collection<Message> findAll() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<Message> findAllBySeverity(Severity by) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns no message, so none is rebuilt either, lets the lazily decorating service run against it.
+     */
+    @Override
+    public boolean keepsInstances() {
+        return true;
+    }
+
+    long getCount() {
+        return count;
+    }
+}
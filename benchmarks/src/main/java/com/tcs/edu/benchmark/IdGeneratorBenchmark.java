@@ -0,0 +1,75 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.IdGenerator;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.repository.RandomIdGenerator;
+import com.tcs.edu.repository.RetentionPolicy;
+import com.tcs.edu.repository.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of id generation alone and of a repository insert using it, under 1, 8 and 32 threads.
+ * <code>secure</code> is {@link UUID#randomUUID()}, <code>random</code> the {@link RandomIdGenerator}
+ * and <code>timeOrdered</code> the {@link TimeOrderedIdGenerator}.
+ * The repository keeps the last {@link #RETAINED} messages, so the heap stays flat during a run.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public abstract class IdGeneratorBenchmark {
+    static final int RETAINED = 100_000;
+
+    @Param({"secure", "random", "timeOrdered"})
+    private String generator;
+
+    private IdGenerator ids;
+    private InMemoryMessageRepositoryImpl repository;
+
+    @Setup
+    public void setUp() {
+        switch (generator) {
+            case "secure":
+                ids = UUID::randomUUID;
+                break;
+            case "random":
+                ids = new RandomIdGenerator();
+                break;
+            default:
+                ids = new TimeOrderedIdGenerator();
+        }
+        repository = new InMemoryMessageRepositoryImpl(Clock.systemUTC(),
+                RetentionPolicy.UNLIMITED.withMaxCount(RETAINED), ids);
+    }
+
+    @Benchmark
+    public UUID next() {
+        return ids.next();
+    }
+
+    @Benchmark
+    public UUID create() {
+        return repository.create(new Message("Benchmark message"));
+    }
+
+    @Threads(1)
+    public static class OneThread extends IdGeneratorBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends IdGeneratorBenchmark {
+    }
+
+    @Threads(32)
+    public static class ThirtyTwoThreads extends IdGeneratorBenchmark {
+    }
+}
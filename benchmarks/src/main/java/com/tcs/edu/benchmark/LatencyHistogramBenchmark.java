@@ -0,0 +1,50 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.metrics.LatencyHistogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording into one shared {@link LatencyHistogram} under 1, 8 and 32 threads.
+ * Every thread records values from the same few buckets, as stage latencies do,
+ * so the time per record shows what is left of the contention on the bucket counts.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class LatencyHistogramBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @State(Scope.Thread)
+    public static class Latency {
+        private long value = 1_000;
+
+        long next() {
+            value = value == 1_100 ? 1_000 : value + 1;
+            return value;
+        }
+    }
+
+    @Benchmark
+    public void record(Latency latency) {
+        histogram.record(latency.next());
+    }
+
+    @Threads(1)
+    public static class OneThread extends LatencyHistogramBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends LatencyHistogramBenchmark {
+    }
+
+    @Threads(32)
+    public static class ThirtyTwoThreads extends LatencyHistogramBenchmark {
+    }
+}
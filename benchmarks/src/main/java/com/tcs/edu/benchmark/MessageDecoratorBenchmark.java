@@ -0,0 +1,62 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.MessageDecoratorChain;
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.decorator.SeverityMessageDecorator;
+import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.decorator.TypographicMessageDecorator;
+import com.tcs.edu.domain.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single <code>decorate</code> call for each of the decorators used by the service,
+ * and of the whole service decoration applied one by one versus fused by {@link MessageDecoratorChain}.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDecoratorBenchmark {
+    private final SeverityMessageDecorator severityDecorator = new SeverityMessageDecorator();
+    private final TimestampMessageDecorator timestampDecorator = new TimestampMessageDecorator();
+    private final MessageDecoratorChain chain = MessageDecoratorChain.builder()
+            .append(severityDecorator)
+            .append(timestampDecorator)
+            .append(new TypographicMessageDecorator())
+            .build();
+    private final Message message = new Message(Severity.REGULAR, "Benchmark message");
+    private int lineNumber;
+
+    @Benchmark
+    public Message severity() {
+        return severityDecorator.decorate(message);
+    }
+
+    @Benchmark
+    public Message timestamp() {
+        return timestampDecorator.decorate(message);
+    }
+
+    @Benchmark
+    public Message typographic() {
+        return new TypographicMessageDecorator(++lineNumber).decorate(message);
+    }
+
+    @Benchmark
+    public Message sequentialChain() {
+        Message decorated = severityDecorator.decorate(message);
+        decorated = timestampDecorator.decorate(decorated);
+        return new TypographicMessageDecorator(++lineNumber).decorate(decorated);
+    }
+
+    @Benchmark
+    public Message fusedChain() {
+        return chain.decorate(message, ++lineNumber);
+    }
+}
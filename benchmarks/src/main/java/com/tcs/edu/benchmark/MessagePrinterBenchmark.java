@@ -0,0 +1,90 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.printer.ConsolePrinter;
+import com.tcs.edu.printer.MessagePrinter;
+import com.tcs.edu.printer.RollingFileMessagePrinter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Printing throughput of {@link ConsolePrinter} with stdout redirected to a file, as it is run in production,
+ * the stream is set up like the JVM one, flushed on every line,
+ * against {@link RollingFileMessagePrinter}. The <code>megabytes</code> counter is the output rate in MB/s,
+ * <code>gc.alloc.rate.norm</code> of the GC profiler is the allocation per message.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePrinterBenchmark {
+    @Param({"console", "rollingFile"})
+    private String printer;
+
+    private final Message message = new Message("2021-01-01T00:00:00Z 1 Benchmark message of a typical log line length ()");
+    private double lineMegabytes;
+    private Path directory;
+    private PrintStream stdout;
+    private MessagePrinter target;
+
+    /**
+     * Output counted per iteration, reported by JMH as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Output {
+        public double megabytes;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("printer-benchmark");
+        lineMegabytes = (message.toString() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length / 1e6;
+        if ("rollingFile".equals(printer)) {
+            target = new RollingFileMessagePrinter(directory, "benchmark",
+                    RollingFileMessagePrinter.DEFAULT_MAX_SEGMENT_BYTES, Duration.ofDays(1), false, Clock.systemUTC());
+        } else {
+            stdout = System.out;
+            System.setOut(new PrintStream(new BufferedOutputStream(
+                    new FileOutputStream(directory.resolve("stdout.log").toFile()), 8192), true, StandardCharsets.UTF_8));
+            target = new ConsolePrinter();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (target instanceof RollingFileMessagePrinter) {
+            ((RollingFileMessagePrinter) target).close();
+        } else {
+            System.out.close();
+            System.setOut(stdout);
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void print(Output output) {
+        target.print(message);
+        output.megabytes += lineMegabytes;
+    }
+}
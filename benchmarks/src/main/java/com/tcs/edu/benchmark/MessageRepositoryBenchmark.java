@@ -0,0 +1,79 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.repository.MessagePage;
+import com.tcs.edu.repository.MessageRepository;
+import com.tcs.edu.repository.RetentionPolicy;
+import com.tcs.edu.repository.TermMatch;
+import com.tcs.edu.repository.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of the repository on stores of different sizes.
+ * One message out of a hundred is {@link Severity#MAJOR}, the rest are split between the other severities.
+ * Message bodies are indexed by term, every message has a unique term and a common one.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MessageRepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int storeSize;
+
+    private MessageRepository repository;
+    private UUID[] keys;
+    private Instant recent;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryMessageRepositoryImpl(Clock.systemUTC(), RetentionPolicy.UNLIMITED,
+                new TimeOrderedIdGenerator(Clock.systemUTC()), true);
+        keys = new UUID[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            Severity severity = i % 100 == 0 ? Severity.MAJOR : Severity.values()[i % 2];
+            keys[i] = repository.create(new Message(severity, "Benchmark message " + i));
+        }
+        recent = repository.findByPrimaryKey(keys[storeSize - 1]).getCreatedAt();
+    }
+
+    @Benchmark
+    public Message findByPrimaryKey() {
+        return repository.findByPrimaryKey(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+
+    @Benchmark
+    public Collection<Message> findAllBySeverity() {
+        return repository.findAllBySeverity(Severity.MAJOR);
+    }
+
+    /**
+     * First page of the most recent messages, should not depend on the store size.
+     */
+    @Benchmark
+    public MessagePage findRecentPage() {
+        return repository.findByCreatedAt(recent, Instant.MAX, 100, null);
+    }
+
+    /**
+     * A single hit intersecting a unique term with a common one, should not depend on the store size.
+     */
+    @Benchmark
+    public Collection<Message> findByRareTerms() {
+        String unique = Integer.toString(ThreadLocalRandom.current().nextInt(storeSize));
+        return repository.findAllByTerms(TermMatch.ALL, "benchmark", unique);
+    }
+}
@@ -0,0 +1,64 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.service.Decoration;
+import com.tcs.edu.service.Doubling;
+import com.tcs.edu.service.LogException;
+import com.tcs.edu.service.MessageService;
+import com.tcs.edu.service.Order;
+import com.tcs.edu.service.OrderedDistinctedMessageService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link OrderedDistinctedMessageService#process(Order, Doubling, Message...)} per batch.
+ * Every tenth message of the batch repeats an earlier one, so {@link Doubling#DISTINCT} has work to do.
+ * <code>parallel</code> decorates batches on {@link ForkJoinPool#commonPool()}, run with several
+ * <code>-Djava.util.concurrent.ForkJoinPool.common.parallelism</code> values to see the scaling.
+ * {@link Decoration#LAZY} stores the messages undecorated, <code>gc.alloc.rate.norm</code> shows the bytes saved.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MessageServiceBenchmark {
+    @Param({"ASC", "DESC"})
+    private Order order;
+    @Param({"DOUBLES", "DISTINCT"})
+    private Doubling doubling;
+    @Param({"1", "100", "10000", "1000000"})
+    private int batchSize;
+    @Param({"false", "true"})
+    private boolean parallel;
+    @Param({"EAGER", "LAZY"})
+    private Decoration decoration;
+
+    private MessageService service;
+    private Message[] batch;
+
+    @Setup
+    public void setUp() {
+        service = new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new CountingMessageRepository(),
+                parallel ? ForkJoinPool.commonPool() : null, null, decoration, OrderedDistinctedMessageService.DEFAULT_RENDER_CACHE_SIZE);
+        batch = new Message[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            batch[i] = i % 10 == 9
+                    ? batch[i - 9]
+                    : new Message(Severity.values()[i % 3], "Benchmark message " + i);
+        }
+    }
+
+    @Benchmark
+    public MessageService process() throws LogException {
+        service.process(order, doubling, batch);
+        return service;
+    }
+}
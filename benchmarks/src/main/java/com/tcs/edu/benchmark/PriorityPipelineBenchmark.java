@@ -0,0 +1,76 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.LatencyHistogram;
+import com.tcs.edu.metrics.MessageMetrics;
+import com.tcs.edu.service.LogException;
+import com.tcs.edu.service.OrderedDistinctedMessageService;
+import com.tcs.edu.service.PriorityMessagePipeline;
+import com.tcs.edu.service.PriorityPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flood of 8 producers publishing one {@link Severity#MAJOR} message in a hundred, the rest {@link Severity#MINOR},
+ * to a {@link PriorityMessagePipeline}. The publication rate is measured, the latency percentiles of both severities
+ * are printed at the end of each trial: <code>MAJOR</code> ones should stay low while <code>MINOR</code> ones queue up.
+ * <code>shedding</code> drops <code>MINOR</code> messages once 4096 are queued.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(8)
+public class PriorityPipelineBenchmark {
+    @Param({"strict", "weighted", "shedding"})
+    private String policy;
+
+    private OrderedDistinctedMessageService service;
+    private PriorityMessagePipeline pipeline;
+    private Message[] messages;
+
+    @Setup
+    public void setUp() {
+        service = new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new CountingMessageRepository());
+        PriorityPolicy priority = "weighted".equals(policy) ? PriorityPolicy.WEIGHTED
+                : "shedding".equals(policy) ? PriorityPolicy.STRICT.withMinorShedding(4096) : PriorityPolicy.STRICT;
+        pipeline = new PriorityMessagePipeline(service, priority);
+        messages = new Message[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message(i % 100 == 0 ? Severity.MAJOR : Severity.MINOR, "Benchmark message " + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pipeline.close();
+        for (Severity severity : new Severity[]{Severity.MAJOR, Severity.MINOR}) {
+            LatencyHistogram latency = service.getMetrics().latency(MessageMetrics.PIPELINE + "." + severity);
+            System.out.printf("%n%s latency ns: p50 %d, p99 %d, p999 %d, max %d", severity,
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMax());
+        }
+        System.out.printf("%nshed: %d%n", pipeline.getShedCount());
+    }
+
+    @Benchmark
+    public boolean publish(Producer producer) throws LogException {
+        return pipeline.publish(messages[producer.next++ & (messages.length - 1)]);
+    }
+
+    /**
+     * Position of the producer thread in the message array.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        private int next;
+    }
+}
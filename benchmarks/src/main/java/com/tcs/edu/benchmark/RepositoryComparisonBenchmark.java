@@ -0,0 +1,76 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.repository.MessageRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the concurrent, severity-indexed {@link InMemoryMessageRepositoryImpl} against the
+ * {@link BaselineMessageRepository} it replaced, under 1, 8 and 32 threads.
+ * <code>create</code> inserts into a repository emptied before every iteration,
+ * <code>findAllBySeverity</code> reads the {@link Severity#MAJOR} messages, one out of a hundred, of a prefilled store.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public abstract class RepositoryComparisonBenchmark {
+    @Param({"baseline", "concurrent"})
+    private String repository;
+
+    @Param({"1000000"})
+    private int storeSize;
+
+    private MessageRepository filled;
+    private MessageRepository empty;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        filled = newRepository();
+        for (int i = 0; i < storeSize; i++) {
+            Severity severity = i % 100 == 0 ? Severity.MAJOR : Severity.values()[i % 2];
+            filled.create(new Message(severity, "Benchmark message " + i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void empty() {
+        empty = newRepository();
+    }
+
+    @Benchmark
+    public UUID create() {
+        return empty.create(new Message(Severity.MINOR, "Benchmark message"));
+    }
+
+    @Benchmark
+    public Collection<Message> findAllBySeverity() {
+        return filled.findAllBySeverity(Severity.MAJOR);
+    }
+
+    private MessageRepository newRepository() {
+        return "baseline".equals(repository) ? new BaselineMessageRepository() : new InMemoryMessageRepositoryImpl();
+    }
+
+    @Threads(1)
+    public static class OneThread extends RepositoryComparisonBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends RepositoryComparisonBenchmark {
+    }
+
+    @Threads(32)
+    public static class ThirtyTwoThreads extends RepositoryComparisonBenchmark {
+    }
+}
@@ -0,0 +1,69 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.CompactMessageRepositoryImpl;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.repository.MessageRepository;
+import com.tcs.edu.repository.RetentionPolicy;
+import com.tcs.edu.repository.TimeOrderedIdGenerator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Clock;
+
+/**
+ * Measures retained heap per stored message: fills a repository with short log lines
+ * and compares the used heap after full collections before and after.
+ * Run one repository per JVM, e.g.
+ * <code>java -Xmx4g -cp target/benchmarks.jar com.tcs.edu.benchmark.RepositoryFootprint compact 10000000</code>
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class RepositoryFootprint {
+    private static final int BATCH_SIZE = 10_000;
+
+    private RepositoryFootprint() {
+    }
+
+    /**
+     * @param args repository (<code>compact</code>, <code>in-memory</code> or <code>indexed</code>, an in-memory one
+     *             with a term index) and number of messages
+     */
+    public static void main(String[] args) {
+        String kind = args.length > 0 ? args[0] : "compact";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        long before = usedHeap();
+        MessageRepository repository = "compact".equals(kind) ? new CompactMessageRepositoryImpl()
+                : "indexed".equals(kind) ? new InMemoryMessageRepositoryImpl(Clock.systemUTC(), RetentionPolicy.UNLIMITED,
+                new TimeOrderedIdGenerator(Clock.systemUTC()), true)
+                : new InMemoryMessageRepositoryImpl();
+        Message[] batch = new Message[BATCH_SIZE];
+        for (int stored = 0; stored < count; stored += batch.length) {
+            for (int i = 0; i < batch.length; i++) {
+                int number = stored + i;
+                Severity severity = number % 100 == 0 ? Severity.MAJOR : Severity.values()[number % 2];
+                batch[i] = new Message(severity, number + " Request handled in " + number % 1000 + " ms (!)");
+            }
+            repository.createAll(batch);
+        }
+        batch = null;
+        long after = usedHeap();
+        System.out.printf("%s: %,d messages, %,d bytes retained, %.1f bytes per message%n",
+                kind, repository.count(), after - before, (double) (after - before) / repository.count());
+        if (repository instanceof InMemoryMessageRepositoryImpl && "indexed".equals(kind)) {
+            InMemoryMessageRepositoryImpl indexed = (InMemoryMessageRepositoryImpl) repository;
+            System.out.printf("term index: %,d terms, %,d bytes estimated, %.1f bytes per message%n",
+                    indexed.getTermCount(), indexed.getTermIndexBytes(),
+                    (double) indexed.getTermIndexBytes() / repository.count());
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,91 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.LatencyHistogram;
+import com.tcs.edu.metrics.MessageMetrics;
+import com.tcs.edu.service.LogException;
+import com.tcs.edu.service.OrderedDistinctedMessageService;
+import com.tcs.edu.service.RingBufferMessagePipeline;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained ingestion rate of single messages under 1, 4 and 16 producer threads.
+ * <code>service</code> calls {@link OrderedDistinctedMessageService#process(Message...)} per message,
+ * <code>pipeline</code> publishes to a {@link RingBufferMessagePipeline}, whose producers wait for free slots,
+ * so the rate measured is the one of the whole pipeline. The pipeline latency percentiles, from publication to storage,
+ * are printed at the end of every trial.
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public abstract class RingBufferPipelineBenchmark {
+    @Param({"service", "pipeline"})
+    private String ingestion;
+
+    private OrderedDistinctedMessageService service;
+    private RingBufferMessagePipeline pipeline;
+    private Message[] messages;
+
+    @Setup
+    public void setUp() {
+        service = new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new CountingMessageRepository());
+        if ("pipeline".equals(ingestion)) {
+            pipeline = new RingBufferMessagePipeline(service);
+        }
+        messages = new Message[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message(Severity.values()[i % 3], "Benchmark message " + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (pipeline != null) {
+            pipeline.close();
+            LatencyHistogram latency = service.getMetrics().latency(MessageMetrics.PIPELINE);
+            System.out.printf("%npipeline latency ns: p50 %d, p99 %d, p999 %d, max %d%n",
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMax());
+        }
+    }
+
+    @Benchmark
+    public void ingest(Producer producer) throws LogException {
+        Message message = messages[producer.next++ & (messages.length - 1)];
+        if (pipeline != null) {
+            pipeline.publish(message);
+        } else {
+            service.process(message);
+        }
+    }
+
+    /**
+     * Position of the producer thread in the message array.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        private int next;
+    }
+
+    @Threads(1)
+    public static class OneThread extends RingBufferPipelineBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends RingBufferPipelineBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends RingBufferPipelineBenchmark {
+    }
+}
@@ -0,0 +1,68 @@
+package com.tcs.edu.benchmark;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.repository.MessageRepository;
+import com.tcs.edu.repository.ShardedMessageRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of a single {@link InMemoryMessageRepositoryImpl} against a {@link ShardedMessageRepository}.
+ * The repository is recreated every iteration, so the heap stays bounded.
+ * {@link #main(String[])} runs it for a range of thread counts and prints the scaling table, e.g.
+ * <code>java -cp target/benchmarks.jar com.tcs.edu.benchmark.ShardedRepositoryBenchmark 1,2,4,8,16,32,64</code>
+ *
+ * @author Zakhar Starokozhev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class ShardedRepositoryBenchmark {
+    @Param({"inMemory", "sharded"})
+    private String repository;
+    @Param({"16"})
+    private int shards;
+
+    private MessageRepository storage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        storage = "sharded".equals(repository) ? new ShardedMessageRepository(shards) : new InMemoryMessageRepositoryImpl();
+    }
+
+    @Benchmark
+    public UUID create() {
+        return storage.create(new Message("Benchmark message"));
+    }
+
+    /**
+     * @param args comma separated thread counts, <code>1,2,4,8,16,32,64</code> by default
+     */
+    public static void main(String[] args) throws RunnerException {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,2,4,8,16,32,64").split(",");
+        StringBuilder table = new StringBuilder(String.format("%8s %12s %12s%n", "threads", "inMemory", "sharded"));
+        for (String threadCount : threadCounts) {
+            table.append(String.format("%8s", threadCount));
+            for (String kind : new String[]{"inMemory", "sharded"}) {
+                RunResult result = new Runner(new OptionsBuilder()
+                        .include(ShardedRepositoryBenchmark.class.getName() + ".create")
+                        .param("repository", kind)
+                        .threads(Integer.parseInt(threadCount.trim()))
+                        .build()).runSingle();
+                table.append(String.format(" %12.0f", result.getPrimaryResult().getScore()));
+            }
+            table.append(System.lineSeparator());
+        }
+        System.out.print(table);
+    }
+}
@@ -0,0 +1,57 @@
+package com.tcs.edu.decorator;
+
+/**
+ * A {@link MessageDecorator} that only wraps the body: adds text before and/or after it.
+ * Consecutive segments are fused by {@link MessageDecoratorChain} into a single pass over one buffer.
+ *
+ * @author Zakhar Starokozhev
+ */
+public interface DecoratorSegment extends MessageDecorator {
+    /**
+     * Appends the text placed before the body.
+     *
+     * @param severity   {@link Severity} of the message decorated
+     * @param lineNumber line number of the message, segments not numbering lines ignore it
+     * @param out        buffer to append to
+     */
+    default void prefix(Severity severity, int lineNumber, StringBuilder out) {
+    }
+
+    /**
+     * Appends the text placed after the body.
+     *
+     * @param severity   {@link Severity} of the message decorated
+     * @param lineNumber line number of the message, segments not numbering lines ignore it
+     * @param out        buffer to append to
+     */
+    default void suffix(Severity severity, int lineNumber, StringBuilder out) {
+    }
+
+    /**
+     * State the segment renders from at decoration time, e.g. the current timestamp, so the message
+     * can be rendered later exactly as it would have been then. A segment either captures on every call or never.
+     *
+     * @return captured state, <code>null</code> if the rendering does not depend on the decoration time
+     */
+    default Object capture() {
+        return null;
+    }
+
+    /**
+     * Appends the text placed before the body from the state returned earlier by {@link #capture()}.
+     *
+     * @param captured state captured by the segment, <code>null</code> for segments not capturing any
+     */
+    default void prefix(Severity severity, int lineNumber, Object captured, StringBuilder out) {
+        prefix(severity, lineNumber, out);
+    }
+
+    /**
+     * Appends the text placed after the body from the state returned earlier by {@link #capture()}.
+     *
+     * @param captured state captured by the segment, <code>null</code> for segments not capturing any
+     */
+    default void suffix(Severity severity, int lineNumber, Object captured, StringBuilder out) {
+        suffix(severity, lineNumber, out);
+    }
+}
@@ -0,0 +1,223 @@
+package com.tcs.edu.decorator;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.domain.RawMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The {@code MessageDecoratorChain} applies decorators in the order they were appended.
+ * Consecutive {@link DecoratorSegment}s are fused: their prefixes and suffixes are written around the body
+ * into one reusable per-thread buffer, so a chain of segments allocates a single <code>Message</code> per call.
+ * Other decorators are applied as is between the fused runs.
+ *
+ * <p>A chain of segments only can also defer the rendering: {@link #capture(Message, int)} keeps the body as is
+ * with the line number and the state the segments render from at that time, {@link #render(RawMessage)}
+ * produces the body {@link #decorate(Message, int)} would have produced then.
+ *
+ * <p>The chain is thread-safe as long as its decorators are.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class MessageDecoratorChain implements MessageDecorator {
+    /**
+     * <code>MAX_RETAINED_CAPACITY</code> keeps a buffer grown by a huge message from being held forever.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    /**
+     * <code>stages</code> holds either a {@link DecoratorSegment} array (a fused run) or a {@link MessageDecorator}
+     */
+    private final Object[] stages;
+    /**
+     * <code>capturing</code> indexes the segments of a fully fused chain returning state from
+     * {@link DecoratorSegment#capture()}, <code>null</code> if the chain is not fully fused
+     */
+    private final int[] capturing;
+
+    private MessageDecoratorChain(Object[] stages) {
+        this.stages = stages;
+        this.capturing = stages.length == 1 && stages[0] instanceof DecoratorSegment[]
+                ? capturingOf((DecoratorSegment[]) stages[0])
+                : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Decorates with line number <code>0</code>, for chains without line numbering segments.
+     */
+    public Message decorate(Message message) {
+        return decorate(message, 0);
+    }
+
+    /**
+     * @param message    The <code>Message</code> to be decorated
+     * @param lineNumber line number passed to the segments
+     * @return The <code>Message</code> with body decorated by every decorator of the chain
+     */
+    public Message decorate(Message message, int lineNumber) {
+        for (Object stage : stages) {
+            if (stage instanceof DecoratorSegment[]) {
+                StringBuilder out = BUFFER.get();
+                out.setLength(0);
+                render((DecoratorSegment[]) stage, message.getSeverity(), message.getBody(), lineNumber, out);
+                message = new Message(message.getSeverity(), out.toString());
+                if (out.capacity() > MAX_RETAINED_CAPACITY) {
+                    BUFFER.remove();
+                }
+            } else {
+                message = ((MessageDecorator) stage).decorate(message);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * @return <code>true</code> if every decorator of the chain is a {@link DecoratorSegment},
+     * so its rendering can be deferred with {@link #capture(Message, int)}
+     */
+    public boolean isFused() {
+        return capturing != null;
+    }
+
+    /**
+     * Captures what the decoration depends on at call time without rendering it.
+     * A single capturing segment keeps its state as is, several ones share an array.
+     *
+     * @param message    The <code>Message</code> to be decorated later
+     * @param lineNumber line number passed to the segments
+     * @return {@link RawMessage} with the undecorated body
+     * @throws IllegalStateException if the chain is not {@link #isFused() fused}
+     */
+    public RawMessage capture(Message message, int lineNumber) {
+        DecoratorSegment[] segments = fusedRun();
+        Object captured = null;
+        if (capturing.length == 1) {
+            captured = segments[capturing[0]].capture();
+        } else if (capturing.length > 1) {
+            Object[] states = new Object[capturing.length];
+            for (int i = 0; i < capturing.length; i++) {
+                states[i] = segments[capturing[i]].capture();
+            }
+            captured = states;
+        }
+        return new RawMessage(message.getSeverity(), message.getBody(), lineNumber, captured);
+    }
+
+    /**
+     * @param raw {@link RawMessage} captured by this chain
+     * @return The <code>Message</code> with the body {@link #decorate(Message, int)} produced at capture time
+     * @throws IllegalStateException if the chain is not {@link #isFused() fused}
+     */
+    public Message render(RawMessage raw) {
+        DecoratorSegment[] segments = fusedRun();
+        Object[] states = new Object[segments.length];
+        if (capturing.length == 1) {
+            states[capturing[0]] = raw.getCaptured();
+        } else if (capturing.length > 1) {
+            Object[] captured = (Object[]) raw.getCaptured();
+            for (int i = 0; i < capturing.length; i++) {
+                states[capturing[i]] = captured[i];
+            }
+        }
+        Severity severity = raw.getSeverity();
+        int lineNumber = raw.getLineNumber();
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        for (int i = segments.length - 1; i >= 0; i--) {
+            segments[i].prefix(severity, lineNumber, states[i], out);
+        }
+        out.append(raw.getBody());
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].suffix(severity, lineNumber, states[i], out);
+        }
+        Message rendered = new Message(severity, out.toString());
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return rendered;
+    }
+
+    private DecoratorSegment[] fusedRun() {
+        if (capturing == null) {
+            throw new IllegalStateException("Chain with decorators other than segments can not defer rendering");
+        }
+        return (DecoratorSegment[]) stages[0];
+    }
+
+    private static int[] capturingOf(DecoratorSegment[] segments) {
+        int[] indexes = new int[segments.length];
+        int count = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].capture() != null) {
+                indexes[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Writes the fused run: prefixes from the last segment to the first, the body, then suffixes from the first.
+     */
+    static void render(DecoratorSegment[] segments, Severity severity, String body, int lineNumber, StringBuilder out) {
+        for (int i = segments.length - 1; i >= 0; i--) {
+            segments[i].prefix(severity, lineNumber, out);
+        }
+        out.append(body);
+        for (DecoratorSegment segment : segments) {
+            segment.suffix(severity, lineNumber, out);
+        }
+    }
+
+    /**
+     * Renders a single segment, used by segments to implement {@link MessageDecorator#decorate(Message)}.
+     */
+    static Message decorate(DecoratorSegment segment, Message message, int lineNumber) {
+        StringBuilder out = new StringBuilder(message.getBody().length() + 64);
+        render(new DecoratorSegment[]{segment}, message.getSeverity(), message.getBody(), lineNumber, out);
+        return new Message(message.getSeverity(), out.toString());
+    }
+
+    /**
+     * Collects decorators of the chain, grouping consecutive segments into fused runs.
+     */
+    public static final class Builder {
+        private final List<Object> stages = new ArrayList<>();
+        private final List<DecoratorSegment> run = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param decorator {@link MessageDecorator} applied after the ones appended before
+         */
+        public Builder append(MessageDecorator decorator) {
+            Objects.requireNonNull(decorator, "Chain decorator must be not NULL");
+            if (decorator instanceof DecoratorSegment) {
+                run.add((DecoratorSegment) decorator);
+            } else {
+                closeRun();
+                stages.add(decorator);
+            }
+            return this;
+        }
+
+        public MessageDecoratorChain build() {
+            closeRun();
+            return new MessageDecoratorChain(stages.toArray());
+        }
+
+        private void closeRun() {
+            if (!run.isEmpty()) {
+                stages.add(run.toArray(new DecoratorSegment[0]));
+                run.clear();
+            }
+        }
+    }
+}
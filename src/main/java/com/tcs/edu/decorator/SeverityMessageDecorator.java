@@ -7,27 +7,32 @@ import com.tcs.edu.domain.Message;
  *
  * @author Zakhar Starokozhev
  */
-public class SeverityMessageDecorator implements MessageDecorator {
+public class SeverityMessageDecorator implements DecoratorSegment {
     /**
      * Adds a space-delimited hard coded severity label to the the message body.
      */
     public Message decorate(Message message) {
-        String body = message.getBody();
-        switch (message.getSeverity()) {
+        return MessageDecoratorChain.decorate(this, message, 0);
+    }
+
+    /**
+     * Appends the severity label.
+     */
+    @Override
+    public void suffix(Severity severity, int lineNumber, StringBuilder out) {
+        switch (severity) {
             case MINOR: {
-                body += " ()";
+                out.append(" ()");
                 break;
             }
             case REGULAR: {
-                body += " (!)";
+                out.append(" (!)");
                 break;
             }
             case MAJOR: {
-                body += " (!!!)";
+                out.append(" (!!!)");
                 break;
             }
         }
-        return new Message(message.getSeverity(), body);
     }
 }
-
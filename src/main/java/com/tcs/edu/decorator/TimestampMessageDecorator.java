@@ -2,19 +2,58 @@ package com.tcs.edu.decorator;
 
 import com.tcs.edu.domain.Message;
 
-import static java.time.Instant.now;
+import java.util.Objects;
 
 /**
  * The {@code TimestampMessageDecorator} is used to add a system UTC timestamp to the <code>Message</code> body.
  *
  * @author Zakhar Starokozhev
  */
-public class TimestampMessageDecorator implements MessageDecorator {
+public class TimestampMessageDecorator implements DecoratorSegment {
+    private final TimestampSource timestamps;
+
+    /**
+     * Timestamps of the system UTC clock with its full precision, rendered like {@link java.time.Instant#now()}.
+     */
+    public TimestampMessageDecorator() {
+        this(new TimestampSource());
+    }
+
+    /**
+     * @param timestamps {@link TimestampSource} defining the clock and the precision
+     */
+    public TimestampMessageDecorator(TimestampSource timestamps) {
+        this.timestamps = Objects.requireNonNull(timestamps, "Decorator timestamp source must be not NULL");
+    }
+
     /**
      * Adds a space-delimited timestamp to the beginning of the message body.
      */
     public Message decorate(Message message) {
-        String body = String.format("%s %s", now(), message.getBody());
-        return new Message(message.getSeverity(), body);
+        return MessageDecoratorChain.decorate(this, message, 0);
+    }
+
+    /**
+     * Appends the current timestamp and a space.
+     */
+    @Override
+    public void prefix(Severity severity, int lineNumber, StringBuilder out) {
+        out.append(timestamps.current()).append(' ');
+    }
+
+    /**
+     * @return text of the current timestamp, shared by every message of the tick
+     */
+    @Override
+    public Object capture() {
+        return timestamps.current();
+    }
+
+    /**
+     * Appends the captured timestamp and a space.
+     */
+    @Override
+    public void prefix(Severity severity, int lineNumber, Object captured, StringBuilder out) {
+        out.append(captured).append(' ');
     }
-}
\ No newline at end of file
+}
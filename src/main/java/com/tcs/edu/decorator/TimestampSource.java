@@ -0,0 +1,95 @@
+package com.tcs.edu.decorator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * The {@code TimestampSource} renders the current time of a {@link Clock} truncated to a precision,
+ * by default the full precision of the clock, as {@link Instant#toString()} renders {@link Instant#now()}.
+ * The rendered text is cached for the current tick, so it is formatted once per tick
+ * instead of once per message. A coarser precision makes ticks longer and the cache more effective.
+ *
+ * <p>Thread-safe.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class TimestampSource {
+    private final Clock clock;
+    private final ChronoUnit precision;
+    /**
+     * <code>tickMillis</code> is the tick length for precisions of a millisecond and above, <code>0</code> below
+     */
+    private final long tickMillis;
+    private volatile Tick cached = new Tick(Long.MIN_VALUE, 0, null);
+
+    /**
+     * UTC system clock with the full precision of the clock.
+     */
+    public TimestampSource() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * @param clock {@link Clock} to read with its full precision, e.g. {@link Clock#fixed} in tests
+     */
+    public TimestampSource(Clock clock) {
+        this(clock, ChronoUnit.NANOS);
+    }
+
+    /**
+     * @param clock     {@link Clock} to read, e.g. {@link Clock#fixed} in tests
+     * @param precision {@link ChronoUnit} from {@link ChronoUnit#NANOS} to {@link ChronoUnit#DAYS} to truncate to,
+     *                  {@link ChronoUnit#NANOS} keeps the full precision of the clock
+     */
+    public TimestampSource(Clock clock, ChronoUnit precision) {
+        this.clock = Objects.requireNonNull(clock, "Timestamp clock must be not NULL");
+        this.precision = Objects.requireNonNull(precision, "Timestamp precision must be not NULL");
+        Duration tick = precision.getDuration();
+        if (tick.compareTo(ChronoUnit.DAYS.getDuration()) > 0 || ChronoUnit.DAYS.getDuration().toNanos() % tick.toNanos() != 0) {
+            throw new IllegalArgumentException("Unsupported timestamp precision: " + precision);
+        }
+        this.tickMillis = tick.toNanos() % 1_000_000 == 0 ? tick.toMillis() : 0;
+    }
+
+    /**
+     * @return ISO-8601 text of the current time truncated to the precision,
+     * e.g. <code>2022-05-01T10:15:30.123456Z</code> with the full precision of a microsecond clock
+     */
+    public String current() {
+        Tick current = cached;
+        if (tickMillis > 0) {
+            long tick = Math.floorDiv(clock.millis(), tickMillis);
+            if (current.key != tick) {
+                current = new Tick(tick, 0, Instant.ofEpochMilli(tick * tickMillis).toString());
+                cached = current;
+            }
+        } else {
+            Instant now = clock.instant().truncatedTo(precision);
+            if (current.key != now.getEpochSecond() || current.nanos != now.getNano()) {
+                current = new Tick(now.getEpochSecond(), now.getNano(), now.toString());
+                cached = current;
+            }
+        }
+        return current.text;
+    }
+
+    /**
+     * Immutable tick and its rendered text, published through a single volatile write.
+     * The key of a tick of a millisecond and above is the tick number with <code>0</code> nanos,
+     * of a finer one the epoch second with the nanos of the truncated instant.
+     */
+    private static final class Tick {
+        private final long key;
+        private final int nanos;
+        private final String text;
+
+        private Tick(long key, int nanos, String text) {
+            this.key = key;
+            this.nanos = nanos;
+            this.text = text;
+        }
+    }
+}
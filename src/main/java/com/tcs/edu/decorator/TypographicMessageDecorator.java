@@ -9,11 +9,31 @@ import com.tcs.edu.domain.Message;
  *
  * @author Zakhar Starokozhev
  */
-public class TypographicMessageDecorator implements MessageDecorator {
+public class TypographicMessageDecorator implements DecoratorSegment {
     private final int messageCount;
+    /**
+     * <code>fixedNumber</code> is <code>true</code> if every message is numbered by {@link #messageCount},
+     * also inside a chain
+     */
+    private final boolean fixedNumber;
 
+    /**
+     * @param messageCount line number of every message decorated, a chain does not override it
+     */
     public TypographicMessageDecorator(int messageCount) {
+        this(messageCount, true);
+    }
+
+    /**
+     * Chain segment form, lines are numbered by the number passed to {@link MessageDecoratorChain#decorate(Message, int)}.
+     */
+    public TypographicMessageDecorator() {
+        this(0, false);
+    }
+
+    private TypographicMessageDecorator(int messageCount, boolean fixedNumber) {
         this.messageCount = messageCount;
+        this.fixedNumber = fixedNumber;
     }
 
     /**
@@ -31,10 +51,31 @@ public class TypographicMessageDecorator implements MessageDecorator {
      * and decorates the last one by {@link TypographicMessageDecorator#PAGE_DELIMITER}
      */
     public Message decorate(Message message) {
-        String body = String.format("%d %s", messageCount, message.getBody());
-        if (messageCount % PAGE_SIZE == 0) {
-            body = String.format("%s %s", body, PAGE_DELIMITER);
+        return MessageDecoratorChain.decorate(this, message, messageCount);
+    }
+
+    /**
+     * Appends the line number and a space.
+     */
+    @Override
+    public void prefix(Severity severity, int lineNumber, StringBuilder out) {
+        out.append(lineOf(lineNumber)).append(' ');
+    }
+
+    /**
+     * Appends {@link #PAGE_DELIMITER} to the last line of the page.
+     */
+    @Override
+    public void suffix(Severity severity, int lineNumber, StringBuilder out) {
+        if (lineOf(lineNumber) % PAGE_SIZE == 0) {
+            out.append(' ').append(PAGE_DELIMITER);
         }
-        return new Message(message.getSeverity(), body);
+    }
+
+    /**
+     * @return {@link #messageCount} if the decorator was created with one, otherwise the line number of the chain
+     */
+    private int lineOf(int lineNumber) {
+        return fixedNumber ? messageCount : lineNumber;
     }
 }
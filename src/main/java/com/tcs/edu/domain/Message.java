@@ -2,6 +2,7 @@ package com.tcs.edu.domain;
 
 import com.tcs.edu.decorator.Severity;
 
+import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -17,6 +18,10 @@ public class Message {
      * mutable {@code UUID} for specific message
      */
     private UUID id;
+    /**
+     * mutable creation time, assigned by the repository together with the {@link #id}
+     */
+    private Instant createdAt;
 
     /**
      * @param level {@link Severity} - impact of the message content to the system
@@ -55,6 +60,14 @@ public class Message {
         id = newId;
     }
 
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant newCreatedAt) {
+        createdAt = newCreatedAt;
+    }
+
     @Override
     public String toString() {
         return body;
@@ -0,0 +1,39 @@
+package com.tcs.edu.domain;
+
+import com.tcs.edu.decorator.Severity;
+
+/**
+ * The {@code RawMessage} is a message stored undecorated together with what its decoration is rendered from later:
+ * the line number and the state the decorators captured when it was processed, e.g. the timestamp text.
+ * The body is the one passed to the service.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class RawMessage extends Message {
+    private final int lineNumber;
+    /**
+     * state captured by {@link com.tcs.edu.decorator.MessageDecoratorChain#capture(Message, int)},
+     * <code>null</code> if no decorator depends on the processing time
+     */
+    private final Object captured;
+
+    /**
+     * @param level      {@link Severity} - impact of the message content to the system
+     * @param body       {@link String} - undecorated content
+     * @param lineNumber line number reserved for the message
+     * @param captured   decoration state captured at processing time
+     */
+    public RawMessage(Severity level, String body, int lineNumber, Object captured) {
+        super(level, body);
+        this.lineNumber = lineNumber;
+        this.captured = captured;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public Object getCaptured() {
+        return captured;
+    }
+}
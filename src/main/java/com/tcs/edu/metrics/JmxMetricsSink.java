@@ -0,0 +1,125 @@
+package com.tcs.edu.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * The {@code JmxMetricsSink} exposes the last published snapshot as read-only <code>long</code> attributes
+ * of a dynamic MBean, one attribute per metric.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class JmxMetricsSink implements MetricsSink, DynamicMBean, AutoCloseable {
+    /**
+     * <code>DEFAULT_NAME</code> is the object name used by the default constructor.
+     */
+    public static final String DEFAULT_NAME = "com.tcs.edu:type=MessageMetrics";
+
+    private final MBeanServer server;
+    private final ObjectName name;
+    private volatile SortedMap<String, Long> snapshot = Collections.emptySortedMap();
+    private volatile MBeanInfo info = info(snapshot);
+
+    /**
+     * Registers the sink in the platform MBean server as {@link #DEFAULT_NAME}.
+     */
+    public JmxMetricsSink() throws JMException {
+        this(ManagementFactory.getPlatformMBeanServer(), new ObjectName(DEFAULT_NAME));
+    }
+
+    /**
+     * @param server {@link MBeanServer} to register in
+     * @param name   {@link ObjectName} of the MBean
+     */
+    public JmxMetricsSink(MBeanServer server, ObjectName name)
+            throws InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
+        this.server = server;
+        this.name = name;
+        server.registerMBean(this, name);
+    }
+
+    @Override
+    public void publish(SortedMap<String, Long> snapshot) {
+        if (!snapshot.keySet().equals(this.snapshot.keySet())) {
+            info = info(snapshot);
+        }
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = snapshot.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        SortedMap<String, Long> current = snapshot;
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Long value = current.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @throws AttributeNotFoundException always, metrics are read-only
+     */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics MBean has no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+
+    /**
+     * Unregisters the MBean.
+     */
+    @Override
+    public void close() throws MBeanRegistrationException, InstanceNotFoundException {
+        server.unregisterMBean(name);
+    }
+
+    private static MBeanInfo info(SortedMap<String, Long> snapshot) {
+        MBeanAttributeInfo[] attributes = snapshot.keySet().stream()
+                .map(metric -> new MBeanAttributeInfo(metric, "long", metric, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(JmxMetricsSink.class.getName(), "Message processing metrics",
+                attributes, null, null, null);
+    }
+}
@@ -0,0 +1,171 @@
+package com.tcs.edu.metrics;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@code MessageMetrics} collects counters, latency histograms and gauges of message processing.
+ * Counters are {@link LongAdder}s and histograms are {@link LatencyHistogram}s, so recording from many threads
+ * does not contend. Stage latencies are per message: a batch records its duration divided by its size
+ * as one sample for each of its messages, so percentiles do not depend on how messages were grouped into calls.
+ * Values are read as a flat, name-sorted {@link #snapshot()} and passed to {@link MetricsSink}s.
+ *
+ * <p>Other components add their own values with {@link #registerGauge(String, LongSupplier)},
+ * e.g. the queue depth of a {@link com.tcs.edu.printer.AsyncMessagePrinter}.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class MessageMetrics {
+    public static final String VALIDATION = "validation";
+    public static final String DECORATION = "decoration";
+    public static final String REPOSITORY_CREATE = "repository.create";
+    public static final String PIPELINE = "pipeline";
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+
+    private final LongAdder[] processed = adders();
+    private final LongAdder[] rejected = adders();
+    private final LongAdder rejectedUnknown = new LongAdder();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param message message stored by the service
+     */
+    public void processed(Message message) {
+        processed[message.getSeverity().ordinal()].increment();
+    }
+
+    /**
+     * @param messages batch stored by the service
+     */
+    public void processed(Message[] messages) {
+        for (Message message : messages) {
+            processed(message);
+        }
+    }
+
+    /**
+     * Counts every message of a rejected batch, messages without severity are counted as unknown.
+     *
+     * @param messages batch rejected by validation, may contain <code>null</code>s
+     */
+    public void rejected(Message... messages) {
+        if (messages == null) {
+            rejectedUnknown.increment();
+            return;
+        }
+        for (Message message : messages) {
+            if (message == null || message.getSeverity() == null) {
+                rejectedUnknown.increment();
+            } else {
+                rejected[message.getSeverity().ordinal()].increment();
+            }
+        }
+    }
+
+    /**
+     * @param stage name of the measured stage, e.g. {@link #VALIDATION}
+     * @return histogram of the stage, created on first use
+     */
+    public LatencyHistogram latency(String stage) {
+        return latencies.computeIfAbsent(stage, name -> new LatencyHistogram());
+    }
+
+    /**
+     * Records the time elapsed since <code>startNanos</code>.
+     *
+     * @param stage      name of the measured stage
+     * @param startNanos {@link System#nanoTime()} taken at the stage start
+     * @return current {@link System#nanoTime()}, the start of the next stage
+     */
+    public long recordSince(String stage, long startNanos) {
+        return recordSince(stage, startNanos, 1);
+    }
+
+    /**
+     * Records the time elapsed since <code>startNanos</code> divided among the messages handled.
+     *
+     * @param stage      name of the measured stage
+     * @param startNanos {@link System#nanoTime()} taken at the stage start
+     * @param messages   number of messages handled by the stage, nothing is recorded for none
+     * @return current {@link System#nanoTime()}, the start of the next stage
+     */
+    public long recordSince(String stage, long startNanos, int messages) {
+        long now = System.nanoTime();
+        if (messages > 0) {
+            latency(stage).record((now - startNanos) / messages, messages);
+        }
+        return now;
+    }
+
+    /**
+     * Adds a value read on every snapshot, replaces a gauge registered under the same name.
+     *
+     * @param name  metric name
+     * @param gauge supplier of the current value, must be cheap and thread-safe
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(Objects.requireNonNull(name, "Gauge name must be not NULL"),
+                Objects.requireNonNull(gauge, "Gauge must be not NULL"));
+    }
+
+    public long getProcessedCount(Severity severity) {
+        return processed[severity.ordinal()].sum();
+    }
+
+    public long getRejectedCount(Severity severity) {
+        return rejected[severity.ordinal()].sum();
+    }
+
+    /**
+     * @return every metric by name: counters, gauges and for each histogram
+     * its count, mean, max and percentiles in nanoseconds
+     */
+    public SortedMap<String, Long> snapshot() {
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+        for (Severity severity : SEVERITIES) {
+            snapshot.put("messages.processed." + severity, processed[severity.ordinal()].sum());
+            snapshot.put("messages.rejected." + severity, rejected[severity.ordinal()].sum());
+        }
+        snapshot.put("messages.rejected.UNKNOWN", rejectedUnknown.sum());
+        latencies.forEach((stage, histogram) -> {
+            String prefix = "latency." + stage + ".";
+            snapshot.put(prefix + "count", histogram.getCount());
+            snapshot.put(prefix + "mean", Math.round(histogram.getMean()));
+            snapshot.put(prefix + "max", histogram.getMax());
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                snapshot.put(prefix + PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]));
+            }
+        });
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        return snapshot;
+    }
+
+    /**
+     * Passes the current {@link #snapshot()} to every sink.
+     */
+    public void publishTo(MetricsSink... sinks) {
+        SortedMap<String, Long> snapshot = snapshot();
+        for (MetricsSink sink : sinks) {
+            sink.publish(snapshot);
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[SEVERITIES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,15 @@
+package com.tcs.edu.metrics;
+
+import java.util.SortedMap;
+
+/**
+ * Receives {@link MessageMetrics} snapshots, e.g. to print or expose them.
+ *
+ * @author Zakhar Starokozhev
+ */
+public interface MetricsSink {
+    /**
+     * @param snapshot metric values by name, see {@link MessageMetrics#snapshot()}
+     */
+    void publish(SortedMap<String, Long> snapshot);
+}
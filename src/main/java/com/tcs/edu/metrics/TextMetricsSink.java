@@ -0,0 +1,41 @@
+package com.tcs.edu.metrics;
+
+import java.io.PrintStream;
+import java.time.Clock;
+import java.util.Objects;
+import java.util.SortedMap;
+
+/**
+ * The {@code TextMetricsSink} prints every snapshot as a plain-text dump: a timestamp line
+ * followed by one <code>name value</code> line per metric.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class TextMetricsSink implements MetricsSink {
+    private final PrintStream out;
+    private final Clock clock;
+
+    public TextMetricsSink() {
+        this(System.out, Clock.systemUTC());
+    }
+
+    /**
+     * @param out   {@link PrintStream} to print to
+     * @param clock {@link Clock} stamping every dump
+     */
+    public TextMetricsSink(PrintStream out, Clock clock) {
+        this.out = Objects.requireNonNull(out, "Sink output must be not NULL");
+        this.clock = Objects.requireNonNull(clock, "Sink clock must be not NULL");
+    }
+
+    /**
+     * Prints the dump with a single write.
+     */
+    @Override
+    public void publish(SortedMap<String, Long> snapshot) {
+        StringBuilder dump = new StringBuilder("# ").append(clock.instant()).append(System.lineSeparator());
+        snapshot.forEach((name, value) -> dump.append(name).append(' ').append(value).append(System.lineSeparator()));
+        out.print(dump);
+        out.flush();
+    }
+}
@@ -0,0 +1,287 @@
+package com.tcs.edu.printer;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.MessageMetrics;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code AsyncMessagePrinter} accepts messages on a bounded queue and prints them from a background writer.
+ * Every message queued at once is written with a single buffered write and a single flush,
+ * so producers never wait for the output itself.
+ * What happens to producers when the queue is full is defined by {@link Backpressure}.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class AsyncMessagePrinter implements MessagePrinter, Flushable, Closeable {
+    /**
+     * <code>DEFAULT_CAPACITY</code> is the queue size used by the default constructor.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final BlockingQueue<Message> queue;
+    private final Backpressure backpressure;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder printed = new LongAdder();
+    /**
+     * <code>accepted</code> and <code>completed</code> let {@link #flush()} wait for its messages,
+     * a message is completed once it is written or discarded.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private volatile boolean closed;
+    /**
+     * <code>stopped</code> is set once the background writer leaves, producers then stop queueing
+     */
+    private volatile boolean stopped;
+    /**
+     * <code>failure</code> is the first write failure since the last {@link #flush()}, which reports and clears it
+     */
+    private volatile IOException failure;
+
+    /**
+     * Prints to the console, blocks producers when {@link #DEFAULT_CAPACITY} messages are waiting.
+     */
+    public AsyncMessagePrinter() {
+        this(new OutputStreamWriter(System.out), DEFAULT_CAPACITY, Backpressure.BLOCK);
+    }
+
+    /**
+     * @param out          {@link Writer} receiving message lines, flushed after every batch but never closed
+     * @param capacity     maximum number of messages waiting to be written
+     * @param backpressure {@link Backpressure} applied when <code>capacity</code> is reached
+     */
+    public AsyncMessagePrinter(Writer out, int capacity, Backpressure backpressure) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Printer capacity must be positive");
+        }
+        this.out = Objects.requireNonNull(out, "Printer output must be not NULL");
+        this.backpressure = Objects.requireNonNull(backpressure, "Printer backpressure must be not NULL");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::drain, "async-message-printer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the message and returns without waiting for it to be written,
+     * unless the queue is full and {@link Backpressure#BLOCK} is used.
+     * A message queued while the writer was leaving is counted as dropped.
+     *
+     * @throws IllegalStateException if the printer is closed or its background writer has stopped
+     */
+    public void print(Message message) {
+        Objects.requireNonNull(message, "Null passed instead of Message");
+        if (closed) {
+            throw new IllegalStateException("Printer is closed");
+        }
+        ensureWriting();
+        accepted.incrementAndGet();
+        switch (backpressure) {
+            case BLOCK: {
+                try {
+                    while (!queue.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                        if (stopped) {
+                            discard(1);
+                            ensureWriting();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    discard(1);
+                }
+                break;
+            }
+            case DROP_OLDEST: {
+                while (!queue.offer(message)) {
+                    if (queue.poll() != null) {
+                        discard(1);
+                    }
+                }
+                break;
+            }
+            case DROP_NEWEST: {
+                if (!queue.offer(message)) {
+                    discard(1);
+                }
+                break;
+            }
+        }
+        if (stopped && queue.remove(message)) {
+            discard(1);
+        }
+    }
+
+    /**
+     * Waits until every message queued before the call is written or dropped, then flushes the output.
+     *
+     * A write failure is reported once, by the first flush after it.
+     *
+     * @throws IOException if the background writer failed to write or stopped before writing the messages
+     */
+    public void flush() throws IOException {
+        long target = accepted.get();
+        synchronized (this) {
+            while (completed.get() < target && writer.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing printer");
+                }
+            }
+            IOException reported = failure;
+            if (reported != null) {
+                failure = null;
+                throw reported;
+            }
+            if (completed.get() < target) {
+                throw new IOException("Printer writer stopped before writing every message");
+            }
+        }
+    }
+
+    /**
+     * Stops accepting messages, writes the queued ones and stops the background writer.
+     * The underlying {@link Writer} is flushed, but stays open.
+     *
+     * @throws IOException if the background writer failed to write
+     */
+    public void close() throws IOException {
+        closed = true;
+        try {
+            flush();
+        } finally {
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * @return number of messages discarded by {@link Backpressure} or lost on write failure
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of messages currently waiting in the queue
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of messages written to the output
+     */
+    public long getPrintedCount() {
+        return printed.sum();
+    }
+
+    /**
+     * Registers the queue depth, dropped and printed counts as gauges of the metrics passed.
+     *
+     * @param metrics {@link MessageMetrics} to report to
+     */
+    public void bindTo(MessageMetrics metrics) {
+        metrics.registerGauge("printer.queue.depth", this::getQueuedCount);
+        metrics.registerGauge("printer.dropped", this::getDroppedCount);
+        metrics.registerGauge("printer.printed", this::getPrintedCount);
+    }
+
+    /**
+     * Background writer loop: waits for the first message, then takes everything queued behind it.
+     * On the way out it writes what producers queued before they could see it leaving.
+     */
+    private void drain() {
+        List<Message> batch = new ArrayList<>();
+        StringBuilder buffer = new StringBuilder();
+        try {
+            while (true) {
+                try {
+                    Message first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (closed && queue.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                } catch (InterruptedException e) {
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                }
+                queue.drainTo(batch);
+                write(batch, buffer);
+                batch.clear();
+                buffer.setLength(0);
+            }
+        } finally {
+            stopped = true;
+            List<Message> left = new ArrayList<>();
+            queue.drainTo(left);
+            if (!left.isEmpty()) {
+                write(left, new StringBuilder());
+            }
+        }
+    }
+
+    /**
+     * Writes the batch with one call, a batch failing on the output or on {@link Message#toString()}
+     * is counted as dropped and the writer carries on with the next one.
+     */
+    private void write(List<Message> batch, StringBuilder buffer) {
+        try {
+            for (Message message : batch) {
+                buffer.append(message).append(LINE_SEPARATOR);
+            }
+            out.append(buffer);
+            out.flush();
+            printed.add(batch.size());
+            complete(batch.size(), null);
+        } catch (IOException e) {
+            dropped.add(batch.size());
+            complete(batch.size(), e);
+        } catch (RuntimeException e) {
+            dropped.add(batch.size());
+            complete(batch.size(), new IOException("Printer output failed", e));
+        }
+    }
+
+    private void ensureWriting() {
+        if (stopped) {
+            throw new IllegalStateException("Printer writer stopped", failure);
+        }
+    }
+
+    private void discard(int count) {
+        dropped.add(count);
+        complete(count, null);
+    }
+
+    private void complete(int count, IOException e) {
+        completed.addAndGet(count);
+        synchronized (this) {
+            if (e != null && failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.tcs.edu.printer;
+
+/**
+ * Behaviour of a bounded printer when its queue is full:
+ * {@link #BLOCK},
+ * {@link #DROP_OLDEST},
+ * {@link #DROP_NEWEST}
+ *
+ * @author Zakhar Starokozhev
+ */
+public enum Backpressure {
+    /**
+     * The producer waits for a free place in the queue
+     */
+    BLOCK,
+    /**
+     * The longest queued message is discarded to make room for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * The new message is discarded
+     */
+    DROP_NEWEST
+}
@@ -0,0 +1,305 @@
+package com.tcs.edu.printer;
+
+import com.tcs.edu.domain.Message;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The {@code RollingFileMessagePrinter} prints message lines to segment files named {@code <prefix>-<number>.log}.
+ * Lines are encoded as UTF-8 straight into a reusable direct {@link ByteBuffer}, which goes to the {@link FileChannel}
+ * without a heap copy once it is full, on {@link #flush()} and on {@link #close()}.
+ *
+ * <p>A segment is rolled over once it reaches <code>maxSegmentBytes</code>, so it may exceed the limit by a single line,
+ * or once the first line printed after <code>maxSegmentAge</code> arrives. Rolled segments are optionally gzipped
+ * to {@code <prefix>-<number>.log.gz} by a background thread. Numbering continues after the segments already
+ * in the directory, nothing is overwritten.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class RollingFileMessagePrinter implements MessagePrinter, Flushable, Closeable {
+    public static final String DEFAULT_PREFIX = "messages";
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final Duration DEFAULT_MAX_SEGMENT_AGE = Duration.ofDays(1);
+    /**
+     * <code>BUFFER_SIZE</code> size of the direct buffer, the unit of a channel write.
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+    private static final String SUFFIX = ".log";
+    private static final String COMPRESSED_SUFFIX = ".log.gz";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Path directory;
+    private final String prefix;
+    private final long maxSegmentBytes;
+    private final long maxSegmentMillis;
+    private final Clock clock;
+    /**
+     * <code>compressor</code> gzips rolled segments, <code>null</code> to keep them as they are
+     */
+    private final ExecutorService compressor;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel segment;
+    private Path segmentPath;
+    private long segmentNumber;
+    private long segmentBytes;
+    private long segmentOpenedAt;
+    private long writtenBytes;
+    private boolean closed;
+
+    /**
+     * Prints to {@link #DEFAULT_PREFIX} segments of {@link #DEFAULT_MAX_SEGMENT_BYTES}, rolled at least daily,
+     * rolled segments are not compressed.
+     *
+     * @param directory segment directory, created if missing
+     */
+    public RollingFileMessagePrinter(Path directory) throws IOException {
+        this(directory, DEFAULT_PREFIX, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_MAX_SEGMENT_AGE, false, Clock.systemUTC());
+    }
+
+    /**
+     * @param directory       segment directory, created if missing
+     * @param prefix          segment file name prefix
+     * @param maxSegmentBytes segment size in bytes after which the next segment is started
+     * @param maxSegmentAge   segment age after which the next segment is started
+     * @param compress        <code>true</code> to gzip rolled segments in the background
+     * @param clock           {@link Clock} measuring the segment age
+     */
+    public RollingFileMessagePrinter(Path directory, String prefix, long maxSegmentBytes, Duration maxSegmentAge,
+                                     boolean compress, Clock clock) throws IOException {
+        if (maxSegmentBytes <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        if (maxSegmentAge.isNegative() || maxSegmentAge.isZero()) {
+            throw new IllegalArgumentException("Segment age must be positive");
+        }
+        this.directory = Objects.requireNonNull(directory, "Printer directory must be not NULL");
+        this.prefix = Objects.requireNonNull(prefix, "Segment prefix must be not NULL");
+        this.clock = Objects.requireNonNull(clock, "Printer clock must be not NULL");
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentMillis = maxSegmentAge.toMillis();
+        this.compressor = compress ? Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "message-segment-gzip");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        Files.createDirectories(directory);
+        openSegment(lastSegmentNumber() + 1);
+    }
+
+    /**
+     * Encodes the message line into the buffer, the file is written only when the buffer fills up.
+     *
+     * @throws IllegalStateException if the printer is closed
+     * @throws UncheckedIOException  if a segment could not be written or rolled
+     */
+    public synchronized void print(Message message) {
+        Objects.requireNonNull(message, "Null passed instead of Message");
+        ensureOpen();
+        try {
+            if (segmentBytes > 0 && clock.millis() - segmentOpenedAt >= maxSegmentMillis) {
+                rollSegment();
+            }
+            String line = message.toString();
+            // a message without body is printed as "null", the way ConsolePrinter prints it
+            encode(line == null ? "null" : line);
+            encode(LINE_SEPARATOR);
+            if (segmentBytes >= maxSegmentBytes) {
+                rollSegment();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Message segment write failed", e);
+        }
+    }
+
+    /**
+     * Writes the buffered lines to the current segment.
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        writeBuffer();
+    }
+
+    /**
+     * Writes the buffered lines, closes the current segment and waits for the pending compressions.
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBuffer();
+        } finally {
+            segment.close();
+            if (compressor != null) {
+                compressor.shutdown();
+                try {
+                    compressor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes encoded since the printer was opened, buffered ones included
+     */
+    public synchronized long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return path of the segment currently printed to
+     */
+    public synchronized Path getSegmentPath() {
+        return segmentPath;
+    }
+
+    /**
+     * UTF-8 encoder writing into {@link #buffer}, so no intermediate byte array is allocated per line.
+     * The leading ASCII run of a line that fits the buffer skips the per-character capacity check.
+     * Side effect on {@link #segmentBytes} and {@link #writtenBytes}.
+     */
+    private void encode(String text) throws IOException {
+        int start = buffer.position();
+        int i = 0;
+        if (buffer.remaining() >= text.length()) {
+            for (char c; i < text.length() && (c = text.charAt(i)) < 0x80; i++) {
+                buffer.put((byte) c);
+            }
+        }
+        for (; i < text.length(); i++) {
+            if (buffer.remaining() < 4) {
+                count(buffer.position() - start);
+                writeBuffer();
+                start = 0;
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        count(buffer.position() - start);
+    }
+
+    private void count(int bytes) {
+        segmentBytes += bytes;
+        writtenBytes += bytes;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffer to the current segment, hands it over to the compressor and opens the next one.
+     */
+    private void rollSegment() throws IOException {
+        writeBuffer();
+        segment.close();
+        Path rolled = segmentPath;
+        openSegment(segmentNumber + 1);
+        if (compressor != null) {
+            compressor.execute(() -> compress(rolled));
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        segmentNumber = number;
+        segmentPath = directory.resolve(prefix + "-" + number + SUFFIX);
+        segment = FileChannel.open(segmentPath, CREATE_NEW, WRITE);
+        segmentBytes = 0;
+        segmentOpenedAt = clock.millis();
+    }
+
+    /**
+     * Replaces the segment with its gzipped copy. On failure the partial copy is removed and the segment kept.
+     */
+    private void compress(Path rolled) {
+        Path compressed = rolled.resolveSibling(rolled.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(rolled);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed, CREATE_NEW, WRITE), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(compressed);
+            } catch (IOException ignored) {
+                // the uncompressed segment is still in place
+            }
+            return;
+        }
+        try {
+            Files.delete(rolled);
+        } catch (IOException e) {
+            // both copies are complete, the uncompressed one is left behind
+        }
+    }
+
+    /**
+     * @return highest segment number in the directory, compressed segments included, <code>-1</code> if none
+     */
+    private long lastSegmentNumber() throws IOException {
+        long last = -1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "-*" + SUFFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String number = name.endsWith(COMPRESSED_SUFFIX)
+                        ? name.substring(prefix.length() + 1, name.length() - COMPRESSED_SUFFIX.length())
+                        : name.endsWith(SUFFIX) ? name.substring(prefix.length() + 1, name.length() - SUFFIX.length()) : "";
+                try {
+                    last = Math.max(last, Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    // not a segment of this printer
+                }
+            }
+        }
+        return last;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Printer is closed");
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@code CompactMessageRepositoryImpl} keeps messages in columns of primitive arrays instead of objects:
+ * ids as two <code>long</code>s, severity as a <code>byte</code>, creation time as epoch milliseconds
+ * and bodies in a shared UTF-8 byte arena. A stored message costs about 50 bytes plus its UTF-8 body,
+ * a {@link Message} is decoded on every read, so collections returned are lazy and unmodifiable.
+ *
+ * <p>Append-only, messages are never removed. Safe for concurrent use: writes take a write lock,
+ * every read of a message takes the read lock. Views see the messages stored before they were returned.
+ * Creation times never go backwards, so the time range queries binary search the columns.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class CompactMessageRepositoryImpl implements MessageRepository {
+    /**
+     * <code>DEFAULT_ARENA_CHUNK_SIZE</code> is the size of a body arena chunk, a larger body gets a chunk of its own.
+     */
+    static final int DEFAULT_ARENA_CHUNK_SIZE = 1 << 20;
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = 0;
+    /**
+     * <code>NULL_BODY</code> is the body length stored for a message without body, nothing is written to the arena
+     */
+    private static final int NULL_BODY = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Clock clock;
+    private final int arenaChunkSize;
+    private final IdGenerator idGenerator;
+    private long[] mostSigBits = new long[INITIAL_CAPACITY];
+    private long[] leastSigBits = new long[INITIAL_CAPACITY];
+    private long[] createdMillis = new long[INITIAL_CAPACITY];
+    private byte[] severities = new byte[INITIAL_CAPACITY];
+    /**
+     * <code>bodyLocations</code> hold the arena chunk number in the high half and the offset in the low half
+     */
+    private long[] bodyLocations = new long[INITIAL_CAPACITY];
+    private int[] bodyLengths = new int[INITIAL_CAPACITY];
+    private int size;
+    /**
+     * <code>idTable</code> is an open addressing table of slot numbers plus one, looked up by the id columns
+     */
+    private int[] idTable = new int[INITIAL_CAPACITY * 2];
+    private final int[][] severitySlots = new int[SEVERITIES.length][INITIAL_CAPACITY / SEVERITIES.length];
+    private final int[] severityCounts = new int[SEVERITIES.length];
+    private final List<byte[]> arena = new ArrayList<>();
+    private byte[] arenaTail;
+    /**
+     * <code>arenaTailIndex</code> is the chunk number of {@link #arenaTail}, oversized bodies added after it
+     * take chunks of their own past it
+     */
+    private int arenaTailIndex;
+    private int arenaTailPosition;
+
+    public CompactMessageRepositoryImpl() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * @param clock {@link Clock} stamping the creation time of stored messages
+     */
+    public CompactMessageRepositoryImpl(Clock clock) {
+        this(clock, DEFAULT_ARENA_CHUNK_SIZE);
+    }
+
+    /**
+     * @param clock {@link Clock} stamping the creation time of stored messages
+     * @param ids   {@link IdGenerator} of stored messages
+     */
+    public CompactMessageRepositoryImpl(Clock clock, IdGenerator ids) {
+        this(clock, DEFAULT_ARENA_CHUNK_SIZE, ids);
+    }
+
+    CompactMessageRepositoryImpl(Clock clock, int arenaChunkSize) {
+        this(clock, arenaChunkSize, new RandomIdGenerator());
+    }
+
+    CompactMessageRepositoryImpl(Clock clock, int arenaChunkSize, IdGenerator ids) {
+        if (arenaChunkSize <= 0) {
+            throw new IllegalArgumentException("Arena chunk size must be positive");
+        }
+        this.clock = Objects.requireNonNull(clock, "Repository clock must be not NULL");
+        this.idGenerator = Objects.requireNonNull(ids, "Repository id generator must be not NULL");
+        this.arenaChunkSize = arenaChunkSize;
+    }
+
+    @Override
+    public UUID create(Message message) {
+        return createAll(new Message[]{message})[0];
+    }
+
+    /**
+     * Encodes the bodies before taking the write lock, the batch shares one creation time.
+     */
+    @Override
+    public UUID[] createAll(Message[] messages) {
+        UUID[] ids = idGenerator.next(messages.length);
+        byte[][] bodies = new byte[messages.length][];
+        for (int i = 0; i < messages.length; i++) {
+            Objects.requireNonNull(messages[i].getSeverity(), "Message severity must be not NULL");
+            String body = messages[i].getBody();
+            bodies[i] = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+        }
+        lock.writeLock().lock();
+        try {
+            long millis = size == 0 ? clock.millis() : Math.max(clock.millis(), createdMillis[size - 1]);
+            Instant createdAt = Instant.ofEpochMilli(millis);
+            ensureCapacity(size + messages.length);
+            for (int i = 0; i < messages.length; i++) {
+                append(ids[i], millis, messages[i].getSeverity(), bodies[i]);
+                messages[i].setId(ids[i]);
+                messages[i].setCreatedAt(createdAt);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return ids;
+    }
+
+    @Override
+    public Message findByPrimaryKey(UUID key) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            return slot < 0 ? null : decode(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Iterates in store order, decoding one message at a time.
+     */
+    @Override
+    public Collection<Message> findAll() {
+        return new SlotView(null, count0());
+    }
+
+    @Override
+    public Collection<Message> findAllBySeverity(Severity by) {
+        lock.readLock().lock();
+        try {
+            return new SlotView(by, severityCounts[by.ordinal()]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Instant from, Instant to, int limit, String pageToken) {
+        return page(null, from, to, limit, pageToken);
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        return page(Objects.requireNonNull(by, "Severity must be not NULL"), from, to, limit, pageToken);
+    }
+
+    @Override
+    public long count() {
+        return count0();
+    }
+
+    @Override
+    public long countBySeverity(Severity by) {
+        lock.readLock().lock();
+        try {
+            return severityCounts[by.ordinal()];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes of heap held by the columns, the id table and the body arena
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) mostSigBits.length * (4 * Long.BYTES + 1 + Integer.BYTES)
+                    + (long) idTable.length * Integer.BYTES;
+            for (int[] slots : severitySlots) {
+                bytes += (long) slots.length * Integer.BYTES;
+            }
+            for (byte[] chunk : arena) {
+                bytes += chunk.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int count0() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes one message to the columns, the capacity must be ensured. Side effect on every column.
+     * A <code>null</code> body is kept as the {@link #NULL_BODY} length.
+     */
+    private void append(UUID id, long millis, Severity severity, byte[] body) {
+        int slot = size++;
+        mostSigBits[slot] = id.getMostSignificantBits();
+        leastSigBits[slot] = id.getLeastSignificantBits();
+        createdMillis[slot] = millis;
+        severities[slot] = (byte) severity.ordinal();
+        bodyLocations[slot] = body == null ? 0 : storeBody(body);
+        bodyLengths[slot] = body == null ? NULL_BODY : body.length;
+        insertSlot(slot);
+        int ordinal = severity.ordinal();
+        if (severityCounts[ordinal] == severitySlots[ordinal].length) {
+            severitySlots[ordinal] = Arrays.copyOf(severitySlots[ordinal], severitySlots[ordinal].length * 2);
+        }
+        severitySlots[ordinal][severityCounts[ordinal]++] = slot;
+    }
+
+    /**
+     * @return location of the body copied to the arena tail, or to a chunk of its own if it does not fit a chunk
+     */
+    private long storeBody(byte[] body) {
+        if (body.length > arenaChunkSize) {
+            arena.add(body.clone());
+            return (long) (arena.size() - 1) << 32;
+        }
+        if (arenaTail == null || arenaTail.length - arenaTailPosition < body.length) {
+            arenaTail = new byte[arenaChunkSize];
+            arenaTailPosition = 0;
+            arenaTailIndex = arena.size();
+            arena.add(arenaTail);
+        }
+        long location = (long) arenaTailIndex << 32 | arenaTailPosition;
+        System.arraycopy(body, 0, arenaTail, arenaTailPosition, body.length);
+        arenaTailPosition += body.length;
+        return location;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > mostSigBits.length) {
+            int capacity = Math.max(required, mostSigBits.length * 2);
+            mostSigBits = Arrays.copyOf(mostSigBits, capacity);
+            leastSigBits = Arrays.copyOf(leastSigBits, capacity);
+            createdMillis = Arrays.copyOf(createdMillis, capacity);
+            severities = Arrays.copyOf(severities, capacity);
+            bodyLocations = Arrays.copyOf(bodyLocations, capacity);
+            bodyLengths = Arrays.copyOf(bodyLengths, capacity);
+        }
+        if (required * 3L > idTable.length * 2L) {
+            int[] old = idTable;
+            idTable = new int[Integer.highestOneBit(required * 3 / 2) << 1];
+            for (int entry : old) {
+                if (entry != EMPTY) {
+                    insertSlot(entry - 1);
+                }
+            }
+        }
+    }
+
+    private void insertSlot(int slot) {
+        int mask = idTable.length - 1;
+        int position = IdLocationIndex.hash(mostSigBits[slot], leastSigBits[slot]) & mask;
+        while (idTable[position] != EMPTY) {
+            position = (position + 1) & mask;
+        }
+        idTable[position] = slot + 1;
+    }
+
+    /**
+     * @return slot of the id or <code>-1</code> when absent, must be called under the lock
+     */
+    private int findSlot(long most, long least) {
+        int mask = idTable.length - 1;
+        for (int position = IdLocationIndex.hash(most, least) & mask; idTable[position] != EMPTY; position = (position + 1) & mask) {
+            int slot = idTable[position] - 1;
+            if (mostSigBits[slot] == most && leastSigBits[slot] == least) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return fresh <code>Message</code> of the slot, must be called under the lock
+     */
+    private Message decode(int slot) {
+        long location = bodyLocations[slot];
+        String body = bodyLengths[slot] == NULL_BODY ? null
+                : new String(arena.get((int) (location >>> 32)), (int) location, bodyLengths[slot], StandardCharsets.UTF_8);
+        Message message = new Message(SEVERITIES[severities[slot]], body);
+        message.setId(new UUID(mostSigBits[slot], leastSigBits[slot]));
+        message.setCreatedAt(Instant.ofEpochMilli(createdMillis[slot]));
+        return message;
+    }
+
+    /**
+     * Pages by binary search over the creation times, the token is the {@link TimeKey} of the last slot returned.
+     */
+    private MessagePage page(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+        long fromMillis = TimeIndex.ceilMillis(Objects.requireNonNull(from, "Range start must be not NULL"));
+        long toMillis = TimeIndex.ceilMillis(Objects.requireNonNull(to, "Range end must be not NULL"));
+        TimeKey cursor = pageToken == null ? null : TimeKey.fromToken(pageToken);
+        lock.readLock().lock();
+        try {
+            int[] slots = by == null ? null : severitySlots[by.ordinal()];
+            int count = by == null ? size : severityCounts[by.ordinal()];
+            int start = lowerBound(slots, count, fromMillis);
+            if (cursor != null) {
+                start = Math.max(start, firstSlotAfter(slots, count, cursor.low));
+            }
+            int end = lowerBound(slots, count, toMillis);
+            List<Message> messages = new ArrayList<>(Math.max(0, Math.min(limit, end - start)));
+            int position = start;
+            for (; position < end && messages.size() < limit; position++) {
+                messages.add(decode(slotAt(slots, position)));
+            }
+            String next = null;
+            if (position < end) {
+                int last = slotAt(slots, position - 1);
+                next = TimeKey.of(createdMillis[last], last).toToken();
+            }
+            return new MessagePage(messages, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return first position whose creation time is not before <code>millis</code>
+     */
+    private int lowerBound(int[] slots, int count, long millis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (createdMillis[slotAt(slots, middle)] < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return first position holding a slot greater than <code>slot</code>
+     */
+    private static int firstSlotAfter(int[] slots, int count, long slot) {
+        if (slots == null) {
+            return (int) Math.max(0, Math.min(count, slot + 1));
+        }
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (slots[middle] <= slot) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int slotAt(int[] slots, int position) {
+        return slots == null ? position : slots[position];
+    }
+
+    /**
+     * Lazy view of the first <code>count</code> messages overall or of a {@link Severity}.
+     */
+    private final class SlotView extends AbstractCollection<Message> {
+        private final Severity severity;
+        private final int count;
+
+        private SlotView(Severity severity, int count) {
+            this.severity = severity;
+            this.count = count;
+        }
+
+        @Override
+        public Iterator<Message> iterator() {
+            return new Iterator<>() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return position < count;
+                }
+
+                @Override
+                public Message next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    lock.readLock().lock();
+                    try {
+                        return decode(slotAt(severity == null ? null : severitySlots[severity.ordinal()], position++));
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The {@code FileMessageRepositoryImpl} appends every stored message to a segmented log on disk
+ * (see {@link MessageLogFormat}) and serves reads from in-memory indexes rebuilt from the log on startup.
+ *
+ * <p>Writes are group committed: the log is forced to disk once <code>maxUnsyncedRecords</code> are appended,
+ * and in the background every <code>maxUnsyncedMillis</code> if anything is left unsynced.
+ * Messages appended after the last sync may be lost on a crash, a torn record at the log tail is cut off on recovery.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class FileMessageRepositoryImpl implements MessageRepository, Closeable {
+    /**
+     * <code>DEFAULT_SEGMENT_SIZE</code> size in bytes after which the log rolls over to a new segment.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_UNSYNCED_RECORDS = 1024;
+    public static final long DEFAULT_MAX_UNSYNCED_MILLIS = 50;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxUnsyncedRecords;
+    private final InMemoryMessageRepositoryImpl index = new InMemoryMessageRepositoryImpl();
+    private final IdGenerator ids;
+    private final ScheduledExecutorService syncer;
+    private FileChannel segment;
+    private long segmentNumber;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private int unsyncedRecords;
+    private boolean closed;
+
+    /**
+     * Opens the log with default segment size and group commit settings.
+     *
+     * @param directory log directory, created if missing
+     */
+    public FileMessageRepositoryImpl(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_UNSYNCED_RECORDS, DEFAULT_MAX_UNSYNCED_MILLIS);
+    }
+
+    /**
+     * Opens the log and replays it into the indexes.
+     *
+     * @param directory          log directory, created if missing
+     * @param segmentSize        segment size in bytes, at most {@link Integer#MAX_VALUE}
+     * @param maxUnsyncedRecords records appended before the log is forced to disk, <code>1</code> syncs every write
+     * @param maxUnsyncedMillis  longest time an appended record stays unsynced
+     */
+    public FileMessageRepositoryImpl(Path directory, long segmentSize, int maxUnsyncedRecords, long maxUnsyncedMillis)
+            throws IOException {
+        this(directory, segmentSize, maxUnsyncedRecords, maxUnsyncedMillis, new RandomIdGenerator());
+    }
+
+    /**
+     * Opens the log and replays it into the indexes.
+     *
+     * @param directory          log directory, created if missing
+     * @param segmentSize        segment size in bytes, at most {@link Integer#MAX_VALUE}
+     * @param maxUnsyncedRecords records appended before the log is forced to disk, <code>1</code> syncs every write
+     * @param maxUnsyncedMillis  longest time an appended record stays unsynced
+     * @param ids                {@link IdGenerator} of stored messages
+     */
+    public FileMessageRepositoryImpl(Path directory, long segmentSize, int maxUnsyncedRecords, long maxUnsyncedMillis,
+                                     IdGenerator ids) throws IOException {
+        if (segmentSize <= MessageLogFormat.HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        if (maxUnsyncedRecords <= 0 || maxUnsyncedMillis <= 0) {
+            throw new IllegalArgumentException("Group commit limits must be positive");
+        }
+        this.directory = Objects.requireNonNull(directory, "Log directory must be not NULL");
+        this.segmentSize = segmentSize;
+        this.maxUnsyncedRecords = maxUnsyncedRecords;
+        this.ids = Objects.requireNonNull(ids, "Repository id generator must be not NULL");
+        Files.createDirectories(directory);
+        recover();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "message-log-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.syncer.scheduleWithFixedDelay(this::syncQuietly, maxUnsyncedMillis, maxUnsyncedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized UUID create(Message message) {
+        message.setId(ids.next());
+        message.setCreatedAt(Instant.ofEpochMilli(System.currentTimeMillis()));
+        append(new Message[]{message});
+        index.store(message);
+        return message.getId();
+    }
+
+    /**
+     * Appends the whole batch with a single channel write per segment and at most one sync.
+     */
+    @Override
+    public synchronized UUID[] createAll(Message[] messages) {
+        UUID[] batchIds = ids.next(messages.length);
+        Instant createdAt = Instant.ofEpochMilli(System.currentTimeMillis());
+        for (int i = 0; i < messages.length; i++) {
+            messages[i].setId(batchIds[i]);
+            messages[i].setCreatedAt(createdAt);
+        }
+        append(messages);
+        index.storeAll(messages);
+        return batchIds;
+    }
+
+    @Override
+    public Message findByPrimaryKey(UUID key) {
+        return index.findByPrimaryKey(key);
+    }
+
+    @Override
+    public Collection<Message> findAll() {
+        return index.findAll();
+    }
+
+    @Override
+    public Collection<Message> findAllBySeverity(Severity by) {
+        return index.findAllBySeverity(by);
+    }
+
+    /**
+     * Creation times survive restarts, they are recovered from the log.
+     */
+    @Override
+    public MessagePage findByCreatedAt(Instant from, Instant to, int limit, String pageToken) {
+        return index.findByCreatedAt(from, to, limit, pageToken);
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        return index.findByCreatedAt(by, from, to, limit, pageToken);
+    }
+
+    @Override
+    public long count() {
+        return index.count();
+    }
+
+    @Override
+    public long countBySeverity(Severity by) {
+        return index.countBySeverity(by);
+    }
+
+    /**
+     * Forces every appended record to disk.
+     */
+    public synchronized void sync() {
+        ensureOpen();
+        try {
+            forceSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Message log sync failed", e);
+        }
+    }
+
+    /**
+     * Syncs the log and releases the files, the repository can not be used afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        syncer.shutdown();
+        try {
+            forceSegment();
+        } finally {
+            segment.close();
+        }
+    }
+
+    /**
+     * Encodes and writes records, rolling segments on the way, then applies the group commit policy.
+     * A batch failing partway is rolled back, so none of its records is replayed on recovery.
+     * Side effect on {@link #unsyncedRecords}.
+     */
+    private void append(Message[] messages) {
+        ensureOpen();
+        long startSegment = segmentNumber;
+        long startPosition;
+        try {
+            startPosition = segment.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Message log append failed", e);
+        }
+        try {
+            long position = startPosition;
+            buffer.clear();
+            for (Message message : messages) {
+                Objects.requireNonNull(message.getSeverity(), "Message severity must be not NULL");
+                byte[] body = MessageLogFormat.encodeBody(message);
+                int recordSize = MessageLogFormat.recordSize(body);
+                if (position + buffer.position() + recordSize > segmentSize
+                        && position + buffer.position() > MessageLogFormat.HEADER_SIZE) {
+                    writeBuffer();
+                    rollSegment();
+                    position = segment.position();
+                }
+                ensureCapacity(recordSize);
+                MessageLogFormat.writeRecord(buffer, message, body, message.getCreatedAt().toEpochMilli());
+            }
+            writeBuffer();
+            unsyncedRecords += messages.length;
+            if (unsyncedRecords >= maxUnsyncedRecords) {
+                forceSegment();
+            }
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Message log append failed", e);
+            rollback(startSegment, startPosition, failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            rollback(startSegment, startPosition, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Cuts the log back to where a failed batch started: deletes the segments rolled during the batch
+     * and truncates the segment it started in. A failure of the rollback itself is suppressed into the batch failure.
+     */
+    private void rollback(long startSegment, long startPosition, RuntimeException failure) {
+        buffer.clear();
+        try {
+            if (segmentNumber != startSegment) {
+                segment.close();
+                for (long number = segmentNumber; number > startSegment; number--) {
+                    Files.deleteIfExists(MessageLogFormat.segmentPath(directory, number));
+                }
+                segmentNumber = startSegment;
+                segment = FileChannel.open(MessageLogFormat.segmentPath(directory, startSegment), WRITE);
+            }
+            segment.truncate(startPosition);
+            segment.position(startPosition);
+            segment.force(true);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void ensureCapacity(int recordSize) {
+        if (buffer.remaining() < recordSize) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + recordSize));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void forceSegment() throws IOException {
+        if (unsyncedRecords > 0) {
+            segment.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    private synchronized void syncQuietly() {
+        if (!closed) {
+            try {
+                forceSegment();
+            } catch (IOException e) {
+                // the next append or explicit sync reports the failure
+            }
+        }
+    }
+
+    /**
+     * Seals the current segment durably and opens the next one.
+     */
+    private void rollSegment() throws IOException {
+        segment.force(false);
+        unsyncedRecords = 0;
+        segment.close();
+        openSegment(segmentNumber + 1);
+    }
+
+    private void openSegment(long number) throws IOException {
+        segmentNumber = number;
+        segment = FileChannel.open(MessageLogFormat.segmentPath(directory, number), CREATE_NEW, WRITE);
+        ByteBuffer header = ByteBuffer.allocate(MessageLogFormat.HEADER_SIZE);
+        MessageLogFormat.writeHeader(header);
+        header.flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segment.force(true);
+    }
+
+    /**
+     * Replays every segment into the indexes. A torn or corrupted record at the tail of the last segment
+     * is truncated away, anywhere else it fails the recovery.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = MessageLogFormat.listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0);
+            return;
+        }
+        List<Message> recovered = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            if (last && Files.size(path) < MessageLogFormat.HEADER_SIZE) {
+                Files.delete(path);
+                openSegment(MessageLogFormat.segmentNumber(path));
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+                ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+                while (content.hasRemaining() && channel.read(content) >= 0) {
+                    // read the whole segment
+                }
+                content.flip();
+                MessageLogFormat.readHeader(content, path);
+                int recordSize;
+                while ((recordSize = MessageLogFormat.checkRecord(content)) > 0) {
+                    recovered.add(MessageLogFormat.readMessage(content, content.position()));
+                    content.position(content.position() + recordSize);
+                }
+                if (content.hasRemaining()) {
+                    if (!last) {
+                        throw new IOException("Corrupted record in sealed segment " + path + " at " + content.position());
+                    }
+                    channel.truncate(content.position());
+                    channel.force(true);
+                }
+            }
+        }
+        index.storeAll(recovered.toArray(new Message[0]));
+        if (segment == null) {
+            Path lastSegment = segments.get(segments.size() - 1);
+            segmentNumber = MessageLogFormat.segmentNumber(lastSegment);
+            segment = FileChannel.open(lastSegment, WRITE);
+            segment.position(segment.size());
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Repository is closed");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.tcs.edu.repository;
+
+import java.util.UUID;
+
+/**
+ * Generates ids of stored messages, e.g. {@link RandomIdGenerator}, {@link TimeOrderedIdGenerator}
+ * or <code>UUID::randomUUID</code>. Implementations must be thread-safe.
+ *
+ * @author Zakhar Starokozhev
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    /**
+     * @return fresh unique id
+     */
+    UUID next();
+
+    /**
+     * @param count number of ids to generate
+     * @return array of fresh unique ids, in generation order
+     */
+    default UUID[] next(int count) {
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = next();
+        }
+        return ids;
+    }
+
+    /**
+     * @return <code>true</code> if ids compare in creation order and carry the creation time,
+     * see {@link TimeOrderedIdGenerator#timestampOf(UUID)}
+     */
+    default boolean isTimeOrdered() {
+        return false;
+    }
+}
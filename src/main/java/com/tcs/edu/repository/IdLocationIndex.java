@@ -0,0 +1,128 @@
+package com.tcs.edu.repository;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The {@code IdLocationIndex} maps message ids to <code>long</code> locations using open addressing
+ * over primitive arrays, about 24 bytes per entry at most 2/3 load instead of a {@link java.util.HashMap} entry,
+ * a {@link UUID} and a boxed value per message.
+ *
+ * <p>Not thread-safe, locations must be non-negative.
+ *
+ * @author Zakhar Starokozhev
+ */
+final class IdLocationIndex {
+    private static final long EMPTY = -1;
+    /**
+     * <code>MAX_CAPACITY</code> is the largest power-of-two table an <code>int</code> index can address.
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private long[] locations;
+    private int size;
+
+    IdLocationIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return power-of-two table size keeping <code>expectedSize</code> ids within 2/3 load,
+     * at most {@link #MAX_CAPACITY}
+     */
+    static int capacityFor(int expectedSize) {
+        long wanted = Math.max(16, expectedSize * 3L / 2);
+        return wanted >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return location stored for the id or <code>-1</code> when absent
+     */
+    long get(UUID id) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        int mask = locations.length - 1;
+        for (int slot = hash(most, least) & mask; locations[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (mostSigBits[slot] == most && leastSigBits[slot] == least) {
+                return locations[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Stores or replaces the location of the id.
+     */
+    void put(UUID id, long location) {
+        if (location < 0) {
+            throw new IllegalArgumentException("Location must be non-negative");
+        }
+        if ((size + 1) * 3L > locations.length * 2L) {
+            grow();
+        }
+        insert(id.getMostSignificantBits(), id.getLeastSignificantBits(), location);
+    }
+
+    /**
+     * @return bytes held by the index arrays
+     */
+    long memoryBytes() {
+        return 3L * Long.BYTES * locations.length;
+    }
+
+    private void insert(long most, long least, long location) {
+        int mask = locations.length - 1;
+        int slot = hash(most, least) & mask;
+        while (locations[slot] != EMPTY) {
+            if (mostSigBits[slot] == most && leastSigBits[slot] == least) {
+                locations[slot] = location;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mostSigBits[slot] = most;
+        leastSigBits[slot] = least;
+        locations[slot] = location;
+        size++;
+    }
+
+    private void grow() {
+        if (locations.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Id index is full: " + size + " ids");
+        }
+        long[] oldMost = mostSigBits;
+        long[] oldLeast = leastSigBits;
+        long[] oldLocations = locations;
+        allocate(oldLocations.length * 2);
+        size = 0;
+        for (int i = 0; i < oldLocations.length; i++) {
+            if (oldLocations[i] != EMPTY) {
+                insert(oldMost[i], oldLeast[i], oldLocations[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        locations = new long[capacity];
+        Arrays.fill(locations, EMPTY);
+    }
+
+    /**
+     * Mixes both halves of an id, so ids differing in a few bits spread over the table.
+     * Shared by the open addressing id tables of the package.
+     */
+    static int hash(long most, long least) {
+        long h = most * 0x9E3779B97F4A7C15L ^ least;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
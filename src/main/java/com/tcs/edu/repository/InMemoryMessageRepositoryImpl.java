@@ -2,22 +2,168 @@ package com.tcs.edu.repository;
 
 import com.tcs.edu.decorator.Severity;
 import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.MessageMetrics;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
 
-import static java.util.stream.Collectors.toList;
-
+/**
+ * The {@code InMemoryMessageRepositoryImpl} keeps messages in heap and is safe for concurrent use.
+ * Messages are indexed by id, by {@link Severity} and by creation time per severity in a {@link TimeIndex},
+ * so the lookup by severity does not scan the whole storage. Ids come from an {@link IdGenerator},
+ * by default a {@link TimeOrderedIdGenerator} on the repository clock: its ids carry the creation time
+ * and serve as the time index keys, so inserts share no counter.
+ *
+ * <p>A {@link RetentionPolicy} bounds the storage. Eviction is lock-free and runs incrementally
+ * on the inserting threads, each one evicting what its inserts pushed over a limit, oldest messages first.
+ * A message is removed from every index at once. Limits may be overshot by inserts still in flight.
+ *
+ * <p>A {@link TermIndex} of message bodies is kept on request, it serves {@link #findAllByTerms(TermMatch, String...)}
+ * and serializes inserts on its write lock. Stored messages are pushed to the subscribers of the {@link MessageFeed}.
+ *
+ * @author Zakhar Starokozhev
+ */
 public class InMemoryMessageRepositoryImpl implements MessageRepository {
-    private final Map<UUID, Message> messages = new HashMap<>();
+    /**
+     * <code>EXPIRED_PER_INSERT</code> bounds the number of expired messages evicted per insert beyond the inserted ones,
+     * so a burst of expirations after an idle period is spread over the following inserts.
+     */
+    static final int EXPIRED_PER_INSERT = 64;
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final RetentionPolicy.Limit[] LIMITS = RetentionPolicy.Limit.values();
+
+    private final Map<UUID, Message> messages = new ConcurrentHashMap<>();
+    /**
+     * <code>severityIndex</code> holds messages of each {@link Severity} in the order they were stored,
+     * it is copied faster than the severity timeline of the {@link #timeIndex}
+     */
+    private final Queue<Message>[] severityIndex = queues(SEVERITIES.length);
+    private final LongAdder[] severityCounts = adders(SEVERITIES.length);
+    private final LongAdder bodyBytes = new LongAdder();
+    private final LongAdder[] evictedCounts = adders(LIMITS.length);
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final Clock clock;
+    private final RetentionPolicy retention;
+    private final IdGenerator ids;
+    /**
+     * <code>termIndex</code> indexes message bodies, <code>null</code> if term queries are not supported
+     */
+    private final TermIndex termIndex;
+    private final MessageFeed feed;
+
+    public InMemoryMessageRepositoryImpl() {
+        this(Clock.systemUTC(), RetentionPolicy.UNLIMITED);
+    }
+
+    /**
+     * @param clock {@link Clock} stamping the creation time of stored messages
+     */
+    public InMemoryMessageRepositoryImpl(Clock clock) {
+        this(clock, RetentionPolicy.UNLIMITED);
+    }
+
+    /**
+     * @param retention {@link RetentionPolicy} bounding the storage
+     */
+    public InMemoryMessageRepositoryImpl(RetentionPolicy retention) {
+        this(Clock.systemUTC(), retention);
+    }
+
+    /**
+     * @param clock     {@link Clock} stamping the creation time of stored messages and aging them
+     * @param retention {@link RetentionPolicy} bounding the storage
+     */
+    public InMemoryMessageRepositoryImpl(Clock clock, RetentionPolicy retention) {
+        this(clock, retention, new TimeOrderedIdGenerator(clock));
+    }
+
+    /**
+     * @param clock     {@link Clock} stamping the creation time of stored messages and aging them
+     * @param retention {@link RetentionPolicy} bounding the storage
+     * @param ids       {@link IdGenerator} of stored messages, a time-ordered one also stamps the creation time
+     */
+    public InMemoryMessageRepositoryImpl(Clock clock, RetentionPolicy retention, IdGenerator ids) {
+        this(clock, retention, ids, false);
+    }
+
+    /**
+     * @param clock      {@link Clock} stamping the creation time of stored messages and aging them
+     * @param retention  {@link RetentionPolicy} bounding the storage
+     * @param ids        {@link IdGenerator} of stored messages, a time-ordered one also stamps the creation time
+     * @param indexTerms <code>true</code> to index message bodies for {@link #findAllByTerms(TermMatch, String...)}
+     */
+    public InMemoryMessageRepositoryImpl(Clock clock, RetentionPolicy retention, IdGenerator ids, boolean indexTerms) {
+        this(clock, retention, ids, indexTerms, new MessageFeed());
+    }
 
+    /**
+     * Part of a repository keeping several stores, e.g. a shard, which shares the id generator and the feed
+     * of the owning repository instead of allocating its own.
+     *
+     * @param clock {@link Clock} aging the stored messages
+     * @param ids   {@link IdGenerator} of the owning repository
+     * @param feed  {@link MessageFeed} of the owning repository
+     */
+    InMemoryMessageRepositoryImpl(Clock clock, IdGenerator ids, MessageFeed feed) {
+        this(clock, RetentionPolicy.UNLIMITED, ids, false, feed);
+    }
+
+    private InMemoryMessageRepositoryImpl(Clock clock, RetentionPolicy retention, IdGenerator ids, boolean indexTerms,
+                                          MessageFeed feed) {
+        this.termIndex = indexTerms ? new TermIndex() : null;
+        this.clock = Objects.requireNonNull(clock, "Repository clock must be not NULL");
+        this.retention = Objects.requireNonNull(retention, "Repository retention must be not NULL");
+        this.ids = Objects.requireNonNull(ids, "Repository id generator must be not NULL");
+        this.feed = Objects.requireNonNull(feed, "Repository feed must be not NULL");
+    }
+
+    /**
+     * Lock-free: the id map and the time index are both concurrent,
+     * the message becomes visible by id before it appears in the time index.
+     */
     @Override
     public UUID create(Message message) {
-        message.setId(UUID.randomUUID());
-        messages.put(message.getId(), message);
-        return message.getId();
+        UUID id = ids.next();
+        message.setId(id);
+        message.setCreatedAt(Instant.ofEpochMilli(createdMillisOf(id, clock.millis())));
+        store(message, ids.isTimeOrdered());
+        evict(1);
+        feed.publish(message);
+        return id;
+    }
+
+    /**
+     * Generates the ids in one call and presizes the id map once for the whole batch.
+     */
+    @Override
+    public UUID[] createAll(Message[] messages) {
+        UUID[] batchIds = ids.next(messages.length);
+        long now = clock.millis();
+        Instant createdAt = null;
+        for (int i = 0; i < messages.length; i++) {
+            long createdMillis = createdMillisOf(batchIds[i], now);
+            if (createdAt == null || createdAt.toEpochMilli() != createdMillis) {
+                createdAt = Instant.ofEpochMilli(createdMillis);
+            }
+            messages[i].setId(batchIds[i]);
+            messages[i].setCreatedAt(createdAt);
+        }
+        storeAll(messages, ids.isTimeOrdered());
+        evict(messages.length);
+        feed.publishAll(messages);
+        return batchIds;
     }
 
     @Override
@@ -30,10 +176,317 @@ public class InMemoryMessageRepositoryImpl implements MessageRepository {
         return messages.values();
     }
 
+    /**
+     * Copies the severity index only, takes time in proportion to the messages of the {@link Severity} passed.
+     */
     @Override
     public Collection<Message> findAllBySeverity(Severity by) {
-        return messages.values().stream().filter(message -> message.getSeverity() == by).collect(toList());
+        return new ArrayList<>(severityIndex[Objects.requireNonNull(by, "Severity must be not NULL").ordinal()]);
+    }
+
+    /**
+     * @return live severity queue, in the order the messages were stored, for repositories copying it themselves
+     */
+    Collection<Message> severityView(Severity by) {
+        return severityIndex[by.ordinal()];
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Instant from, Instant to, int limit, String pageToken) {
+        return timeIndex.page(null, from, to, limit, pageToken);
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        return timeIndex.page(Objects.requireNonNull(by, "Severity must be not NULL"), from, to, limit, pageToken);
+    }
+
+    /**
+     * Takes time in proportion to the postings of the terms, the {@link Severity} filter is applied to the matches.
+     *
+     * @throws UnsupportedOperationException if the repository was created without a term index
+     */
+    @Override
+    public Collection<Message> findAllByTerms(TermMatch match, String... terms) {
+        return termIndex().find(null, Objects.requireNonNull(match, "Term match must be not NULL"), terms);
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the repository was created without a term index
+     */
+    @Override
+    public Collection<Message> findAllByTerms(Severity by, TermMatch match, String... terms) {
+        return termIndex().find(Objects.requireNonNull(by, "Severity must be not NULL"),
+                Objects.requireNonNull(match, "Term match must be not NULL"), terms);
+    }
+
+    /**
+     * @return <code>true</code>, messages are kept as passed
+     */
+    @Override
+    public boolean keepsInstances() {
+        return true;
+    }
+
+    /**
+     * Messages are published once stored and after the eviction they caused.
+     */
+    @Override
+    public Flow.Publisher<Message> changes() {
+        return feed.publisher(null);
+    }
+
+    @Override
+    public Flow.Publisher<Message> changesBySeverity(Severity by) {
+        return feed.publisher(Objects.requireNonNull(by, "Severity must be not NULL"));
+    }
+
+    /**
+     * Constant time, does not walk the indexes.
+     */
+    @Override
+    public long count() {
+        return messages.size();
+    }
+
+    /**
+     * Constant time, does not walk the indexes.
+     */
+    @Override
+    public long countBySeverity(Severity by) {
+        return severityCounts[by.ordinal()].sum();
+    }
+
+    /**
+     * @param limit {@link RetentionPolicy.Limit} the messages were evicted by
+     * @return number of messages evicted by the limit
+     */
+    public long getEvictedCount(RetentionPolicy.Limit limit) {
+        return evictedCounts[limit.ordinal()].sum();
+    }
+
+    /**
+     * @return total size of stored message bodies in UTF-8, tracked only if the {@link RetentionPolicy} limits it
+     */
+    public long getBodyBytes() {
+        return bodyBytes.sum();
+    }
+
+    /**
+     * @return {@link MessageFeed} publishing the stored messages
+     */
+    public MessageFeed getFeed() {
+        return feed;
     }
 
+    /**
+     * @return approximate heap held by the term index, <code>0</code> if there is none
+     */
+    public long getTermIndexBytes() {
+        return termIndex == null ? 0 : termIndex.memoryBytes();
+    }
+
+    /**
+     * @return number of distinct terms in the term index, <code>0</code> if there is none
+     */
+    public int getTermCount() {
+        return termIndex == null ? 0 : termIndex.termCount();
+    }
 
+    /**
+     * Registers the eviction counts per {@link RetentionPolicy.Limit} and the feed drops as gauges of the metrics passed,
+     * and the term index size if there is one.
+     *
+     * @param metrics {@link MessageMetrics} to report to
+     */
+    public void bindTo(MessageMetrics metrics) {
+        for (RetentionPolicy.Limit limit : LIMITS) {
+            metrics.registerGauge("repository.evicted." + limit, () -> getEvictedCount(limit));
+        }
+        metrics.registerGauge("repository.body.bytes", this::getBodyBytes);
+        metrics.registerGauge("repository.feed.dropped", feed::getDroppedCount);
+        if (termIndex != null) {
+            metrics.registerGauge("repository.term.index.bytes", this::getTermIndexBytes);
+            metrics.registerGauge("repository.term.count", this::getTermCount);
+        }
+    }
+
+    /**
+     * Indexes a message which already has an id and creation time, used by repositories keeping their own storage.
+     *
+     * @param message message with id and creation time assigned
+     */
+    void store(Message message) {
+        store(message, false);
+    }
+
+    /**
+     * Bulk counterpart of {@link #store(Message)}.
+     *
+     * @param batch messages with ids and creation times assigned
+     */
+    void storeAll(Message[] batch) {
+        storeAll(batch, false);
+    }
+
+    /**
+     * @param message message with id and creation time assigned
+     * @param idKeyed <code>true</code> if the id is time-ordered and keys the time index
+     */
+    void store(Message message, boolean idKeyed) {
+        messages.put(message.getId(), message);
+        severityIndex[message.getSeverity().ordinal()].add(message);
+        severityCounts[message.getSeverity().ordinal()].increment();
+        if (tracksBodyBytes()) {
+            bodyBytes.add(utf8Length(message.getBody()));
+        }
+        if (termIndex != null) {
+            termIndex.add(message);
+        }
+        timeIndex.add(message, idKeyed);
+    }
+
+    /**
+     * Bulk counterpart of {@link #store(Message, boolean)}.
+     *
+     * @param batch   messages with ids and creation times assigned
+     * @param idKeyed <code>true</code> if the ids are time-ordered and key the time index
+     */
+    void storeAll(Message[] batch, boolean idKeyed) {
+        Map<UUID, Message> byId = new HashMap<>(batch.length * 4 / 3 + 1);
+        List<List<Message>> bySeverity = new ArrayList<>(SEVERITIES.length);
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            bySeverity.add(new ArrayList<>());
+        }
+        long batchBytes = 0;
+        for (Message message : batch) {
+            byId.put(message.getId(), message);
+            bySeverity.get(message.getSeverity().ordinal()).add(message);
+            if (tracksBodyBytes()) {
+                batchBytes += utf8Length(message.getBody());
+            }
+        }
+        messages.putAll(byId);
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            List<Message> indexed = bySeverity.get(i);
+            if (!indexed.isEmpty()) {
+                severityIndex[i].addAll(indexed);
+                severityCounts[i].add(indexed.size());
+            }
+        }
+        bodyBytes.add(batchBytes);
+        if (termIndex != null) {
+            termIndex.addAll(batch);
+        }
+        timeIndex.addAll(batch, idKeyed);
+    }
+
+    /**
+     * Evicts the oldest messages until the storage is within the {@link #retention} limits.
+     * Concurrent callers may pick the same oldest message, only the one removing it from the time index accounts it.
+     *
+     * @param inserted number of messages the caller inserted, bounds the expired messages evicted
+     */
+    private void evict(int inserted) {
+        if (retention.isUnlimited()) {
+            return;
+        }
+        long now = clock.millis();
+        int expiredBudget = inserted + EXPIRED_PER_INSERT;
+        Map.Entry<TimeKey, Message> oldest;
+        for (Severity severity : SEVERITIES) {
+            long maxAge = retention.getMaxAgeMillis(severity);
+            while (expiredBudget > 0 && maxAge != Long.MAX_VALUE && (oldest = timeIndex.oldest(severity)) != null
+                    && now - oldest.getKey().createdMillis() > maxAge) {
+                evict(oldest, RetentionPolicy.Limit.AGE);
+                expiredBudget--;
+            }
+            while (severityCounts[severity.ordinal()].sum() > retention.getMaxCount(severity)
+                    && (oldest = timeIndex.oldest(severity)) != null) {
+                evict(oldest, RetentionPolicy.Limit.SEVERITY_COUNT);
+            }
+        }
+        while (messages.size() > retention.getMaxCount() && (oldest = timeIndex.oldest(null)) != null) {
+            evict(oldest, RetentionPolicy.Limit.COUNT);
+        }
+        while (bodyBytes.sum() > retention.getMaxBodyBytes() && (oldest = timeIndex.oldest(null)) != null) {
+            evict(oldest, RetentionPolicy.Limit.BODY_BYTES);
+        }
+    }
+
+    /**
+     * Removes the message from every index and accounts it, side effect on the counters.
+     * The oldest message is found near the head of its severity queue, so removing it from there scans little.
+     */
+    private void evict(Map.Entry<TimeKey, Message> oldest, RetentionPolicy.Limit limit) {
+        Message message = oldest.getValue();
+        if (timeIndex.remove(oldest.getKey(), message)) {
+            messages.remove(message.getId(), message);
+            severityIndex[message.getSeverity().ordinal()].remove(message);
+            severityCounts[message.getSeverity().ordinal()].decrement();
+            if (tracksBodyBytes()) {
+                bodyBytes.add(-utf8Length(message.getBody()));
+            }
+            if (termIndex != null) {
+                termIndex.remove(message);
+            }
+            evictedCounts[limit.ordinal()].increment();
+        }
+    }
+
+    private TermIndex termIndex() {
+        if (termIndex == null) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " was created without a term index");
+        }
+        return termIndex;
+    }
+
+    /**
+     * @return time carried by a time-ordered id, so that it matches the time index key, otherwise <code>now</code>
+     */
+    private long createdMillisOf(UUID id, long now) {
+        return ids.isTimeOrdered() ? TimeOrderedIdGenerator.timestampOf(id) : now;
+    }
+
+    private boolean tracksBodyBytes() {
+        return retention.getMaxBodyBytes() != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return size of the text in UTF-8, without encoding it
+     */
+    static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Queue<Message>[] queues(int count) {
+        Queue<Message>[] queues = new Queue[count];
+        for (int i = 0; i < count; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+        return queues;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
 }
@@ -0,0 +1,203 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The {@code MappedMessageLogRepositoryImpl} is a read-only view of a message log written by
+ * {@link FileMessageRepositoryImpl}. Segments are memory-mapped, the heap holds only a compact
+ * id-to-location index and a location list per {@link Severity}, message bodies are decoded on access.
+ *
+ * <p>The view is a snapshot of the log at open time. Every read returns a freshly decoded <code>Message</code>,
+ * so collections returned by {@link #findAll()} and {@link #findAllBySeverity(Severity)} are lazy and unmodifiable.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class MappedMessageLogRepositoryImpl implements MessageRepository {
+    private final MappedByteBuffer[] segments;
+    private final IdLocationIndex index;
+    /**
+     * <code>severityLocations</code> record locations of each {@link Severity} in log order,
+     * a location is the segment number in the high half and the record offset in the low half
+     */
+    private final long[][] severityLocations = new long[Severity.values().length][];
+    private final int[] severityCounts = new int[Severity.values().length];
+
+    /**
+     * Maps every segment of the log and indexes its records.
+     * A torn tail of the last segment is ignored, a corrupted sealed segment fails the open.
+     *
+     * @param directory log directory
+     */
+    public MappedMessageLogRepositoryImpl(Path directory) throws IOException {
+        List<Path> paths = MessageLogFormat.listSegments(directory);
+        segments = new MappedByteBuffer[paths.size()];
+        long totalBytes = 0;
+        for (int i = 0; i < segments.length; i++) {
+            try (FileChannel channel = FileChannel.open(paths.get(i), READ)) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                totalBytes += channel.size();
+            }
+        }
+        for (int s = 0; s < severityLocations.length; s++) {
+            severityLocations[s] = new long[16];
+        }
+        index = new IdLocationIndex((int) Math.min(Integer.MAX_VALUE / 2, totalBytes / 64));
+        for (int i = 0; i < segments.length; i++) {
+            indexSegment(i, paths.get(i), i == segments.length - 1);
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException always, the repository is read-only
+     */
+    @Override
+    public UUID create(Message message) {
+        throw new UnsupportedOperationException("Mapped message log is read-only");
+    }
+
+    /**
+     * @throws UnsupportedOperationException always, the repository is read-only
+     */
+    @Override
+    public UUID[] createAll(Message[] messages) {
+        throw new UnsupportedOperationException("Mapped message log is read-only");
+    }
+
+    @Override
+    public Message findByPrimaryKey(UUID key) {
+        long location = index.get(key);
+        return location < 0 ? null : decode(location);
+    }
+
+    /**
+     * Iterates the log in write order, decoding one message at a time.
+     */
+    @Override
+    public Collection<Message> findAll() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Message> iterator() {
+                return new LogIterator();
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Message> findAllBySeverity(Severity by) {
+        long[] locations = severityLocations[by.ordinal()];
+        int count = severityCounts[by.ordinal()];
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Message> iterator() {
+                return Arrays.stream(locations, 0, count).mapToObj(MappedMessageLogRepositoryImpl.this::decode).iterator();
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public long count() {
+        return index.size();
+    }
+
+    @Override
+    public long countBySeverity(Severity by) {
+        return severityCounts[by.ordinal()];
+    }
+
+    /**
+     * @return bytes of heap used by the id and severity indexes
+     */
+    public long indexMemoryBytes() {
+        long bytes = index.memoryBytes();
+        for (long[] locations : severityLocations) {
+            bytes += (long) Long.BYTES * locations.length;
+        }
+        return bytes;
+    }
+
+    private void indexSegment(int number, Path path, boolean last) throws IOException {
+        MappedByteBuffer segment = segments[number];
+        if (last && segment.limit() < MessageLogFormat.HEADER_SIZE) {
+            segment.limit(0);
+            return;
+        }
+        MessageLogFormat.readHeader(segment, path);
+        int recordSize;
+        while ((recordSize = MessageLogFormat.checkRecord(segment)) > 0) {
+            int offset = segment.position();
+            long location = (long) number << 32 | offset;
+            index.put(MessageLogFormat.readId(segment, offset), location);
+            addSeverityLocation(MessageLogFormat.readSeverity(segment, offset), location);
+            segment.position(offset + recordSize);
+        }
+        if (segment.hasRemaining() && !last) {
+            throw new IOException("Corrupted record in sealed segment " + path + " at " + segment.position());
+        }
+        segment.limit(segment.position());
+    }
+
+    private void addSeverityLocation(Severity severity, long location) {
+        int ordinal = severity.ordinal();
+        if (severityCounts[ordinal] == severityLocations[ordinal].length) {
+            severityLocations[ordinal] = Arrays.copyOf(severityLocations[ordinal], severityCounts[ordinal] * 2);
+        }
+        severityLocations[ordinal][severityCounts[ordinal]++] = location;
+    }
+
+    private Message decode(long location) {
+        return MessageLogFormat.readMessage(segments[(int) (location >>> 32)], (int) location);
+    }
+
+    /**
+     * Walks the validated part of each segment record by record.
+     */
+    private class LogIterator implements Iterator<Message> {
+        private int segment;
+        private int offset = MessageLogFormat.HEADER_SIZE;
+
+        @Override
+        public boolean hasNext() {
+            while (segment < segments.length && offset >= segments[segment].limit()) {
+                segment++;
+                offset = MessageLogFormat.HEADER_SIZE;
+            }
+            return segment < segments.length;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            MappedByteBuffer buffer = segments[segment];
+            Message message = MessageLogFormat.readMessage(buffer, offset);
+            offset += MessageLogFormat.RECORD_HEADER_SIZE + buffer.getInt(offset);
+            return message;
+        }
+    }
+}
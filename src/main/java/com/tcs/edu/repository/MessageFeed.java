@@ -0,0 +1,127 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code MessageFeed} pushes stored messages to {@link Flow.Subscriber}s, overall or per {@link Severity},
+ * so consumers do not poll the repository. Every subscriber has its own bounded buffer and is served
+ * on the executor as it requests more. Publishing never waits for a subscriber: a message that does not fit
+ * the buffer of a subscriber is dropped for that subscriber and counted.
+ *
+ * <p>A severity subscriber has a publisher of its own, so it buffers only the messages it asked for.
+ * Until the first subscription publishing costs a volatile read.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class MessageFeed implements AutoCloseable {
+    /**
+     * <code>DEFAULT_BUFFER_CAPACITY</code> messages buffered per subscriber by default.
+     */
+    public static final int DEFAULT_BUFFER_CAPACITY = Flow.defaultBufferSize();
+
+    private final SubmissionPublisher<Message> all;
+    private final List<SubmissionPublisher<Message>> bySeverity = new ArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean subscribed;
+
+    /**
+     * Serves subscribers on the common {@link ForkJoinPool} with {@link #DEFAULT_BUFFER_CAPACITY} buffers.
+     */
+    public MessageFeed() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param executor       {@link Executor} delivering messages to subscribers
+     * @param bufferCapacity largest number of messages buffered per subscriber, rounded up to a power of two
+     */
+    public MessageFeed(Executor executor, int bufferCapacity) {
+        Objects.requireNonNull(executor, "Feed executor must be not NULL");
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Feed buffer capacity must be positive");
+        }
+        this.all = new SubmissionPublisher<>(executor, bufferCapacity);
+        for (int i = 0; i < Severity.values().length; i++) {
+            bySeverity.add(new SubmissionPublisher<>(executor, bufferCapacity));
+        }
+    }
+
+    /**
+     * @param by {@link Severity} to filter by, <code>null</code> for every message
+     * @return {@link Flow.Publisher} of the messages stored from the subscription on
+     */
+    public Flow.Publisher<Message> publisher(Severity by) {
+        SubmissionPublisher<Message> target = by == null ? all : bySeverity.get(by.ordinal());
+        return subscriber -> {
+            subscribed = true;
+            target.subscribe(subscriber);
+        };
+    }
+
+    /**
+     * Offers the message to the subscribers without waiting, ignored once the feed is closed.
+     *
+     * @param message stored message
+     */
+    void publish(Message message) {
+        if (!subscribed || all.isClosed()) {
+            return;
+        }
+        offer(all, message);
+        offer(bySeverity.get(message.getSeverity().ordinal()), message);
+    }
+
+    /**
+     * Bulk counterpart of {@link #publish(Message)}.
+     *
+     * @param batch stored messages, published in the order passed
+     */
+    void publishAll(Message[] batch) {
+        if (!subscribed || all.isClosed()) {
+            return;
+        }
+        for (Message message : batch) {
+            offer(all, message);
+            offer(bySeverity.get(message.getSeverity().ordinal()), message);
+        }
+    }
+
+    /**
+     * @return number of messages dropped by subscribers with full buffers, a message counts once per subscriber
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Completes every subscriber once it has received the messages already buffered for it.
+     */
+    @Override
+    public void close() {
+        all.close();
+        bySeverity.forEach(SubmissionPublisher::close);
+    }
+
+    private void offer(SubmissionPublisher<Message> publisher, Message message) {
+        if (publisher.hasSubscribers()) {
+            try {
+                publisher.offer(message, (subscriber, item) -> {
+                    dropped.increment();
+                    return false;
+                });
+            } catch (IllegalStateException e) {
+                // closed while publishing, the message is not delivered as after close
+            }
+        }
+    }
+}
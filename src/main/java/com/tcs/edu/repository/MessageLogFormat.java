@@ -0,0 +1,166 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of the message log shared by the log based repositories.
+ *
+ * <p>The log is a sequence of segment files named {@code messages-<number>.log}.
+ * Each segment starts with a header of {@link #MAGIC} and {@link #VERSION} followed by records:
+ * <pre>
+ * int   payload length
+ * int   CRC32 of the payload
+ * long  id most significant bits
+ * long  id least significant bits
+ * long  creation time, epoch millis
+ * byte  severity ordinal
+ * byte[] body, UTF-8
+ * </pre>
+ *
+ * @author Zakhar Starokozhev
+ */
+final class MessageLogFormat {
+    static final int MAGIC = 0x4D53474C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int PAYLOAD_FIXED_SIZE = 25;
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final String SEGMENT_PREFIX = "messages-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private MessageLogFormat() {
+    }
+
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @param directory log directory
+     * @return segment files ordered from the oldest to the newest
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        segments.sort((left, right) -> Long.compare(segmentNumber(left), segmentNumber(right)));
+        return segments;
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * @param buffer segment content positioned at its start
+     * @throws IOException if the segment was not written in this format
+     */
+    static void readHeader(ByteBuffer buffer, Path segment) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a message log segment: " + segment);
+        }
+    }
+
+    static byte[] encodeBody(Message message) {
+        return message.getBody().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int recordSize(byte[] body) {
+        return RECORD_HEADER_SIZE + PAYLOAD_FIXED_SIZE + body.length;
+    }
+
+    /**
+     * Writes a complete record, the buffer must have {@link #recordSize(byte[])} bytes remaining.
+     */
+    static void writeRecord(ByteBuffer buffer, Message message, byte[] body, long createdMillis) {
+        int start = buffer.position();
+        buffer.putInt(PAYLOAD_FIXED_SIZE + body.length).putInt(0)
+                .putLong(message.getId().getMostSignificantBits())
+                .putLong(message.getId().getLeastSignificantBits())
+                .putLong(createdMillis)
+                .put((byte) message.getSeverity().ordinal())
+                .put(body);
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + RECORD_HEADER_SIZE).limit(buffer.position());
+        crc.update(payload);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Checks the record at the buffer position without moving it.
+     *
+     * @return size of the whole record or <code>-1</code> if the record is truncated or corrupted
+     */
+    static int checkRecord(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.limit() - start < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        int length = buffer.getInt(start);
+        if (length < PAYLOAD_FIXED_SIZE || length > buffer.limit() - start - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + RECORD_HEADER_SIZE).limit(start + RECORD_HEADER_SIZE + length);
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return -1;
+        }
+        return RECORD_HEADER_SIZE + length;
+    }
+
+    static UUID readId(ByteBuffer buffer, int recordStart) {
+        return new UUID(buffer.getLong(recordStart + 8), buffer.getLong(recordStart + 16));
+    }
+
+    static long readCreatedMillis(ByteBuffer buffer, int recordStart) {
+        return buffer.getLong(recordStart + 24);
+    }
+
+    static Severity readSeverity(ByteBuffer buffer, int recordStart) {
+        return SEVERITIES[buffer.get(recordStart + 32)];
+    }
+
+    static String readBody(ByteBuffer buffer, int recordStart) {
+        int length = buffer.getInt(recordStart) - PAYLOAD_FIXED_SIZE;
+        byte[] body = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(recordStart + RECORD_HEADER_SIZE + PAYLOAD_FIXED_SIZE);
+        source.get(body);
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a record previously accepted by {@link #checkRecord(ByteBuffer)}.
+     */
+    static Message readMessage(ByteBuffer buffer, int recordStart) {
+        Message message = new Message(readSeverity(buffer, recordStart), readBody(buffer, recordStart));
+        message.setId(readId(buffer, recordStart));
+        message.setCreatedAt(Instant.ofEpochMilli(readCreatedMillis(buffer, recordStart)));
+        return message;
+    }
+}
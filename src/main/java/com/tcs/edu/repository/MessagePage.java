@@ -0,0 +1,41 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.domain.Message;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code MessagePage} is one page of a paged repository query, see
+ * {@link MessageRepository#findByCreatedAt(java.time.Instant, java.time.Instant, int, String)}.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class MessagePage {
+    private final List<Message> messages;
+    private final String nextPageToken;
+
+    /**
+     * @param messages      messages of the page in creation order
+     * @param nextPageToken token of the next page, <code>null</code> for the last page
+     */
+    public MessagePage(List<Message> messages, String nextPageToken) {
+        this.messages = Collections.unmodifiableList(messages);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return token to pass to the same query for the next page, <code>null</code> if this page is the last one
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
@@ -3,8 +3,10 @@ package com.tcs.edu.repository;
 import com.tcs.edu.decorator.Severity;
 import com.tcs.edu.domain.Message;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.Flow;
 
 public interface MessageRepository {
     /**
@@ -14,6 +16,29 @@ public interface MessageRepository {
      */
     UUID create(Message message);
 
+    /**
+     * Bulk counterpart of {@link #create(Message)}, the messages are stored in the order passed.
+     *
+     * @param messages to put in storage
+     * @return unique ids of the messages stored, in the same order
+     */
+    default UUID[] createAll(Message[] messages) {
+        UUID[] ids = new UUID[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            ids[i] = create(messages[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * @param messages to put in storage
+     * @return unique ids of the messages stored, in iteration order of the collection
+     * @see #createAll(Message[])
+     */
+    default UUID[] createAll(Collection<Message> messages) {
+        return createAll(messages.toArray(new Message[0]));
+    }
+
     /**
      * Look for the stored message matching specific id
      * @param key unique id of the message
@@ -32,4 +57,93 @@ public interface MessageRepository {
      * @return stored messages filtered by {@link Severity} passed
      */
     Collection<Message> findAllBySeverity(Severity by);
+
+    /**
+     * Reads messages created in the time range page by page, in creation order.
+     * Creation time is kept with millisecond precision.
+     *
+     * @param from      creation time lower bound, inclusive, {@link Instant#MIN} for no bound
+     * @param to        creation time upper bound, exclusive, {@link Instant#MAX} for no bound
+     * @param limit     largest number of messages in the page
+     * @param pageToken {@link MessagePage#getNextPageToken()} of the previous page, <code>null</code> for the first page
+     * @return page of stored messages
+     * @throws UnsupportedOperationException if the repository keeps no time index
+     */
+    default MessagePage findByCreatedAt(Instant from, Instant to, int limit, String pageToken) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support time range queries");
+    }
+
+    /**
+     * @param by - specific message {@link Severity} to search by
+     * @see #findByCreatedAt(Instant, Instant, int, String)
+     */
+    default MessagePage findByCreatedAt(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support time range queries");
+    }
+
+    /**
+     * Full-text query over message bodies. A body is split into terms at every character that is not a letter or digit,
+     * terms are matched whole and case-insensitively. Query terms are split the same way,
+     * so <code>"Fizz!"</code> looks for <code>fizz</code> and <code>"disk full"</code> for <code>disk</code> and <code>full</code>.
+     *
+     * @param match {@link TermMatch} combining the terms
+     * @param terms terms to look for
+     * @return stored messages matching the terms, in the order they were stored
+     * @throws UnsupportedOperationException if the repository keeps no term index
+     */
+    default Collection<Message> findAllByTerms(TermMatch match, String... terms) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support term queries");
+    }
+
+    /**
+     * @param by - specific message {@link Severity} to search by
+     * @see #findAllByTerms(TermMatch, String...)
+     */
+    default Collection<Message> findAllByTerms(Severity by, TermMatch match, String... terms) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support term queries");
+    }
+
+    /**
+     * Change feed of the repository, every message stored after the subscription is pushed to the subscriber
+     * as it requests more. A slow subscriber never delays storing, messages it has no room for are dropped for it.
+     *
+     * @return {@link Flow.Publisher} of stored messages
+     * @throws UnsupportedOperationException if the repository publishes no changes
+     */
+    default Flow.Publisher<Message> changes() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not publish changes");
+    }
+
+    /**
+     * @param by - specific message {@link Severity} to subscribe to
+     * @see #changes()
+     */
+    default Flow.Publisher<Message> changesBySeverity(Severity by) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not publish changes");
+    }
+
+    /**
+     * Repositories rebuilding messages from their own storage return plain {@link Message}s,
+     * a subclass such as {@link com.tcs.edu.domain.RawMessage} and its fields do not survive them.
+     *
+     * @return <code>true</code> if the find methods return the very objects passed to create
+     */
+    default boolean keepsInstances() {
+        return false;
+    }
+
+    /**
+     * @return number of stored messages
+     */
+    default long count() {
+        return findAll().size();
+    }
+
+    /**
+     * @param by - specific message {@link Severity} to count
+     * @return number of stored messages of the {@link Severity} passed
+     */
+    default long countBySeverity(Severity by) {
+        return findAllBySeverity(by).size();
+    }
 }
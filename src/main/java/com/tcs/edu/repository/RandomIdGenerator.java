@@ -0,0 +1,33 @@
+package com.tcs.edu.repository;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code RandomIdGenerator} makes random (version 4) ids from {@link ThreadLocalRandom}
+ * instead of the {@link java.security.SecureRandom} behind {@link UUID#randomUUID()}.
+ * The ids are unique, but not suitable as secrets.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class RandomIdGenerator implements IdGenerator {
+    @Override
+    public UUID next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return randomId(random.nextLong(), random.nextLong());
+    }
+
+    @Override
+    public UUID[] next(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = randomId(random.nextLong(), random.nextLong());
+        }
+        return ids;
+    }
+
+    private static UUID randomId(long mostSigBits, long leastSigBits) {
+        return new UUID(mostSigBits & ~0xF000L | 0x4000L, leastSigBits & ~(0xC000L << 48) | 0x8000L << 48);
+    }
+}
@@ -0,0 +1,144 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The {@code RetentionPolicy} limits what an {@link InMemoryMessageRepositoryImpl} keeps:
+ * the number of messages, their total body size, their age, and the same per {@link Severity},
+ * e.g. to keep {@link Severity#MAJOR} messages longer than {@link Severity#MINOR} ones.
+ * The oldest messages are evicted first. A severity age limit overrides the overall one.
+ *
+ * <p>Immutable, every <code>with</code> method returns a new policy.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class RetentionPolicy {
+    /**
+     * <code>UNLIMITED</code> keeps every message, the default of the repository.
+     */
+    public static final RetentionPolicy UNLIMITED = new RetentionPolicy(Long.MAX_VALUE, Long.MAX_VALUE,
+            Long.MAX_VALUE, filled(Long.MAX_VALUE), filled(Long.MAX_VALUE));
+
+    /**
+     * {@code Limit} names the limit a message was evicted by.
+     */
+    public enum Limit {
+        COUNT, BODY_BYTES, AGE, SEVERITY_COUNT
+    }
+
+    private final long maxCount;
+    private final long maxBodyBytes;
+    private final long maxAgeMillis;
+    private final long[] severityMaxCounts;
+    private final long[] severityMaxAgeMillis;
+
+    private RetentionPolicy(long maxCount, long maxBodyBytes, long maxAgeMillis,
+                            long[] severityMaxCounts, long[] severityMaxAgeMillis) {
+        this.maxCount = maxCount;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.severityMaxCounts = severityMaxCounts;
+        this.severityMaxAgeMillis = severityMaxAgeMillis;
+    }
+
+    /**
+     * @param maxCount largest number of stored messages
+     */
+    public RetentionPolicy withMaxCount(long maxCount) {
+        return new RetentionPolicy(positive(maxCount), maxBodyBytes, maxAgeMillis, severityMaxCounts, severityMaxAgeMillis);
+    }
+
+    /**
+     * @param maxBodyBytes largest total size of stored message bodies in UTF-8
+     */
+    public RetentionPolicy withMaxBodyBytes(long maxBodyBytes) {
+        return new RetentionPolicy(maxCount, positive(maxBodyBytes), maxAgeMillis, severityMaxCounts, severityMaxAgeMillis);
+    }
+
+    /**
+     * @param maxAge longest time a message is kept after creation, millisecond precision
+     */
+    public RetentionPolicy withMaxAge(Duration maxAge) {
+        return new RetentionPolicy(maxCount, maxBodyBytes, positive(maxAge.toMillis()), severityMaxCounts, severityMaxAgeMillis);
+    }
+
+    /**
+     * @param severity {@link Severity} the quota applies to
+     * @param maxCount largest number of stored messages of the severity
+     */
+    public RetentionPolicy withMaxCount(Severity severity, long maxCount) {
+        long[] counts = severityMaxCounts.clone();
+        counts[severity.ordinal()] = positive(maxCount);
+        return new RetentionPolicy(this.maxCount, maxBodyBytes, maxAgeMillis, counts, severityMaxAgeMillis);
+    }
+
+    /**
+     * @param severity {@link Severity} the limit applies to
+     * @param maxAge   longest time a message of the severity is kept, overrides {@link #withMaxAge(Duration)}
+     */
+    public RetentionPolicy withMaxAge(Severity severity, Duration maxAge) {
+        long[] ages = severityMaxAgeMillis.clone();
+        ages[severity.ordinal()] = positive(maxAge.toMillis());
+        return new RetentionPolicy(maxCount, maxBodyBytes, maxAgeMillis, severityMaxCounts, ages);
+    }
+
+    public long getMaxCount() {
+        return maxCount;
+    }
+
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public long getMaxCount(Severity severity) {
+        return severityMaxCounts[severity.ordinal()];
+    }
+
+    /**
+     * @return age limit of the severity in milliseconds, {@link Long#MAX_VALUE} for none
+     */
+    public long getMaxAgeMillis(Severity severity) {
+        long severityMaxAge = severityMaxAgeMillis[severity.ordinal()];
+        return severityMaxAge != Long.MAX_VALUE ? severityMaxAge : maxAgeMillis;
+    }
+
+    /**
+     * @return <code>true</code> if no limit is set
+     */
+    public boolean isUnlimited() {
+        return equals(UNLIMITED);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RetentionPolicy that = (RetentionPolicy) o;
+        return maxCount == that.maxCount && maxBodyBytes == that.maxBodyBytes && maxAgeMillis == that.maxAgeMillis
+                && Arrays.equals(severityMaxCounts, that.severityMaxCounts)
+                && Arrays.equals(severityMaxAgeMillis, that.severityMaxAgeMillis);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(maxCount, maxBodyBytes, maxAgeMillis)
+                + 17 * Arrays.hashCode(severityMaxCounts) + Arrays.hashCode(severityMaxAgeMillis);
+    }
+
+    private static long positive(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Retention limit must be positive: " + limit);
+        }
+        return limit;
+    }
+
+    private static long[] filled(long value) {
+        long[] values = new long[Severity.values().length];
+        Arrays.fill(values, value);
+        return values;
+    }
+}
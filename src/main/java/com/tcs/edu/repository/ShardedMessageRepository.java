@@ -0,0 +1,307 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * The {@code ShardedMessageRepository} partitions messages by id hash over independent
+ * {@link InMemoryMessageRepositoryImpl} shards, so concurrent inserts touch different maps and counters.
+ * Ids come from a {@link TimeOrderedIdGenerator}, whose per-thread counters share nothing either,
+ * and key the time index of every shard, so pages of different shards merge by id.
+ *
+ * <p>Reads by id go to one shard. {@link #findAll()} and {@link #findAllBySeverity(Severity)} scatter to every shard
+ * and copy what it holds once, in parallel if a {@link ForkJoinPool} is given.
+ * Without one {@link #findAll()} is a lazy concatenation of the shard views and copies nothing.
+ * Neither is in creation order across shards, {@link #findByCreatedAt(Instant, Instant, int, String)} is.
+ * Stored messages are pushed to the subscribers of a single {@link MessageFeed} shared by the shards,
+ * which share the id generator too and allocate no publishers of their own.
+ *
+ * @author Zakhar Starokozhev
+ */
+public class ShardedMessageRepository implements MessageRepository {
+    private final InMemoryMessageRepositoryImpl[] shards;
+    private final IdGenerator ids;
+    private final MessageFeed feed = new MessageFeed();
+    /**
+     * <code>pool</code> runs scatter-gather reads, <code>null</code> to read the shards on the caller thread
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * One shard per available processor, shards are read on the caller thread.
+     */
+    public ShardedMessageRepository() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param shardCount number of shards
+     */
+    public ShardedMessageRepository(int shardCount) {
+        this(Clock.systemUTC(), shardCount, null);
+    }
+
+    /**
+     * @param clock      {@link Clock} stamping the creation time of stored messages
+     * @param shardCount number of shards
+     * @param pool       {@link ForkJoinPool} reading the shards in parallel, <code>null</code> for sequential reads
+     */
+    public ShardedMessageRepository(Clock clock, int shardCount, ForkJoinPool pool) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        Objects.requireNonNull(clock, "Repository clock must be not NULL");
+        this.ids = new TimeOrderedIdGenerator(clock);
+        this.shards = new InMemoryMessageRepositoryImpl[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new InMemoryMessageRepositoryImpl(clock, ids, feed);
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public UUID create(Message message) {
+        UUID id = ids.next();
+        message.setId(id);
+        message.setCreatedAt(Instant.ofEpochMilli(TimeOrderedIdGenerator.timestampOf(id)));
+        shardOf(id).store(message, true);
+        feed.publish(message);
+        return id;
+    }
+
+    /**
+     * Splits the batch by shard, every shard gets one bulk store.
+     */
+    @Override
+    public UUID[] createAll(Message[] messages) {
+        UUID[] batchIds = ids.next(messages.length);
+        int[] shardSizes = new int[shards.length];
+        int[] shardOf = new int[messages.length];
+        Instant createdAt = null;
+        for (int i = 0; i < messages.length; i++) {
+            long createdMillis = TimeOrderedIdGenerator.timestampOf(batchIds[i]);
+            if (createdAt == null || createdAt.toEpochMilli() != createdMillis) {
+                createdAt = Instant.ofEpochMilli(createdMillis);
+            }
+            messages[i].setId(batchIds[i]);
+            messages[i].setCreatedAt(createdAt);
+            shardOf[i] = indexOf(batchIds[i]);
+            shardSizes[shardOf[i]]++;
+        }
+        Message[][] byShard = new Message[shards.length][];
+        for (int s = 0; s < shards.length; s++) {
+            byShard[s] = new Message[shardSizes[s]];
+            shardSizes[s] = 0;
+        }
+        for (int i = 0; i < messages.length; i++) {
+            byShard[shardOf[i]][shardSizes[shardOf[i]]++] = messages[i];
+        }
+        for (int s = 0; s < shards.length; s++) {
+            if (byShard[s].length > 0) {
+                shards[s].storeAll(byShard[s], true);
+            }
+        }
+        feed.publishAll(messages);
+        return batchIds;
+    }
+
+    @Override
+    public Message findByPrimaryKey(UUID key) {
+        return shardOf(key).findByPrimaryKey(key);
+    }
+
+    /**
+     * Copies every shard in parallel on the {@link #pool} and concatenates the copies,
+     * without a pool iterates the shards one after another without copying them.
+     */
+    @Override
+    public Collection<Message> findAll() {
+        if (pool != null && shards.length > 1) {
+            return gather(InMemoryMessageRepositoryImpl::findAll, count());
+        }
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Message> iterator() {
+                return Arrays.stream(shards).flatMap(shard -> shard.findAll().stream()).iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, count());
+            }
+        };
+    }
+
+    /**
+     * Copies the severity queue of every shard once, in parallel on the {@link #pool} if any.
+     */
+    @Override
+    public Collection<Message> findAllBySeverity(Severity by) {
+        Objects.requireNonNull(by, "Severity must be not NULL");
+        return gather(shard -> shard.severityView(by), countBySeverity(by));
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Instant from, Instant to, int limit, String pageToken) {
+        return mergePages(null, from, to, limit, pageToken);
+    }
+
+    @Override
+    public MessagePage findByCreatedAt(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        return mergePages(Objects.requireNonNull(by, "Severity must be not NULL"), from, to, limit, pageToken);
+    }
+
+    /**
+     * @return <code>true</code>, messages are kept as passed
+     */
+    @Override
+    public boolean keepsInstances() {
+        return true;
+    }
+
+    @Override
+    public Flow.Publisher<Message> changes() {
+        return feed.publisher(null);
+    }
+
+    @Override
+    public Flow.Publisher<Message> changesBySeverity(Severity by) {
+        return feed.publisher(Objects.requireNonNull(by, "Severity must be not NULL"));
+    }
+
+    /**
+     * Sums the shard counters.
+     */
+    @Override
+    public long count() {
+        long count = 0;
+        for (InMemoryMessageRepositoryImpl shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    /**
+     * Sums the shard counters.
+     */
+    @Override
+    public long countBySeverity(Severity by) {
+        long count = 0;
+        for (InMemoryMessageRepositoryImpl shard : shards) {
+            count += shard.countBySeverity(by);
+        }
+        return count;
+    }
+
+    /**
+     * @return {@link MessageFeed} publishing the stored messages
+     */
+    public MessageFeed getFeed() {
+        return feed;
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Copies a view of every shard once. On the {@link #pool} every shard is copied by a task of its own
+     * and the copies are concatenated in shard order without copying them again,
+     * without a pool the views are copied one after another into a single list.
+     *
+     * @param view     live view of one shard
+     * @param expected expected number of messages, presizes the list
+     * @return copy of the views in shard order
+     */
+    private Collection<Message> gather(Function<InMemoryMessageRepositoryImpl, Collection<Message>> view, long expected) {
+        if (pool == null || shards.length == 1) {
+            List<Message> merged = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, expected));
+            for (InMemoryMessageRepositoryImpl shard : shards) {
+                copy(view.apply(shard), merged);
+            }
+            return merged;
+        }
+        List<ForkJoinTask<List<Message>>> tasks = new ArrayList<>(shards.length);
+        for (InMemoryMessageRepositoryImpl shard : shards) {
+            tasks.add(pool.submit(() -> copy(view.apply(shard), new ArrayList<>())));
+        }
+        List<List<Message>> parts = new ArrayList<>(shards.length);
+        int size = 0;
+        for (ForkJoinTask<List<Message>> task : tasks) {
+            List<Message> part = task.join();
+            parts.add(part);
+            size += part.size();
+        }
+        int total = size;
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Message> iterator() {
+                return parts.stream().flatMap(List::stream).iterator();
+            }
+
+            @Override
+            public int size() {
+                return total;
+            }
+        };
+    }
+
+    /**
+     * Adds the messages one by one, a bulk <code>addAll</code> of a concurrent view would copy it into an array first.
+     */
+    private static List<Message> copy(Collection<Message> from, List<Message> to) {
+        for (Message message : from) {
+            to.add(message);
+        }
+        return to;
+    }
+
+    /**
+     * Takes a page of <code>limit</code> messages from every shard past the same cursor and keeps the first
+     * <code>limit</code> of them by time key. The token of a shard page is the key of its last message,
+     * so the cursor of the merged page is valid for every shard.
+     */
+    private MessagePage mergePages(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        List<Message> merged = new ArrayList<>();
+        boolean more = false;
+        for (InMemoryMessageRepositoryImpl shard : shards) {
+            MessagePage page = by == null ? shard.findByCreatedAt(from, to, limit, pageToken)
+                    : shard.findByCreatedAt(by, from, to, limit, pageToken);
+            merged.addAll(page.getMessages());
+            more |= page.hasNextPage();
+        }
+        merged.sort(Comparator.comparing(message -> TimeKey.of(message.getId())));
+        if (merged.size() <= limit && !more) {
+            return new MessagePage(merged, null);
+        }
+        List<Message> page = new ArrayList<>(merged.subList(0, Math.min(limit, merged.size())));
+        return new MessagePage(page, TimeKey.of(page.get(page.size() - 1).getId()).toToken());
+    }
+
+    private InMemoryMessageRepositoryImpl shardOf(UUID id) {
+        return shards[indexOf(id)];
+    }
+
+    private int indexOf(UUID id) {
+        return Math.floorMod(id.hashCode(), shards.length);
+    }
+}
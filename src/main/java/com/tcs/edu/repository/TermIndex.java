@@ -0,0 +1,350 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@code TermIndex} is an inverted index of message bodies. Every indexed message gets an internal <code>int</code>
+ * document number in insertion order, every term maps to the sorted array of the numbers of the messages containing it.
+ * A body is split into terms at every character that is not a letter or digit, terms are matched whole and case-insensitively.
+ *
+ * <p>An {@link TermMatch#ALL} query walks the shortest posting list and gallops through the others,
+ * an {@link TermMatch#ANY} query merges the lists, so both cost in proportion to the postings matched rather than
+ * to the number of stored messages. Removed messages leave a hole in the document table until more than half of it
+ * is holes, then the postings are compacted.
+ *
+ * <p>Safe for concurrent use: queries share a read lock, inserts and removals take the write lock,
+ * bodies are split into terms before it is taken.
+ *
+ * @author Zakhar Starokozhev
+ */
+final class TermIndex {
+    /**
+     * <code>MIN_COMPACTED_HOLES</code> keeps small indexes from compacting on every other removal.
+     */
+    private static final int MIN_COMPACTED_HOLES = 1024;
+    /**
+     * Approximate heap cost of a term besides its postings and characters, assuming compressed references:
+     * the map entry and table slot, the {@link String} with its byte array header, the {@link Postings} with its array header.
+     */
+    private static final int TERM_OVERHEAD_BYTES = 32 + 4 + 24 + 16 + 16 + 16;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private IdLocationIndex documentNumbers = new IdLocationIndex(1024);
+    private Message[] documents = new Message[1024];
+    private int documentCount;
+    private int holes;
+
+    /**
+     * @param message message with id assigned
+     */
+    void add(Message message) {
+        List<String> terms = terms(message.getBody());
+        lock.writeLock().lock();
+        try {
+            index(message, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk counterpart of {@link #add(Message)}, takes the write lock once.
+     *
+     * @param batch messages with ids assigned
+     */
+    void addAll(Message[] batch) {
+        List<List<String>> terms = new ArrayList<>(batch.length);
+        for (Message message : batch) {
+            terms.add(terms(message.getBody()));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < batch.length; i++) {
+                index(batch[i], terms.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param message indexed message, ignored if it is not indexed
+     */
+    void remove(Message message) {
+        lock.writeLock().lock();
+        try {
+            long number = documentNumbers.get(message.getId());
+            if (number < 0 || documents[(int) number] != message) {
+                return;
+            }
+            documents[(int) number] = null;
+            holes++;
+            if (holes >= MIN_COMPACTED_HOLES && holes * 2 > documentCount) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param by    {@link Severity} to filter by, <code>null</code> for every message
+     * @param match {@link TermMatch} combining the terms
+     * @param terms terms to look for, split and normalized by {@link #terms(String)} like the bodies,
+     *              so <code>"disk full"</code> stands for the two terms <code>disk</code> and <code>full</code>
+     * @return matching messages in insertion order
+     */
+    List<Message> find(Severity by, TermMatch match, String... terms) {
+        List<String> queried = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            queried.addAll(terms(Objects.requireNonNull(term, "Term must be not NULL")));
+        }
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>(queried.size());
+            for (String term : queried) {
+                Postings list = postings.get(term);
+                if (list != null) {
+                    lists.add(list);
+                } else if (match == TermMatch.ALL) {
+                    return new ArrayList<>();
+                }
+            }
+            if (lists.isEmpty()) {
+                return new ArrayList<>();
+            }
+            int[] hits = match == TermMatch.ALL ? intersect(lists) : union(lists);
+            List<Message> found = new ArrayList<>(hits.length);
+            for (int number : hits) {
+                Message message = documents[number];
+                if (message != null && (by == null || message.getSeverity() == by)) {
+                    found.add(message);
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return approximate heap held by the index: postings, term dictionary, document table and id lookup
+     */
+    long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) Integer.BYTES * documents.length + documentNumbers.memoryBytes();
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                bytes += TERM_OVERHEAD_BYTES + entry.getKey().length() + (long) Integer.BYTES * entry.getValue().numbers.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of distinct terms indexed
+     */
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits the body at every character that is not a letter or digit and lowercases the terms.
+     * A term repeated in the body is returned repeatedly, {@link Postings#add(int)} drops the repetitions.
+     */
+    static List<String> terms(String body) {
+        List<String> terms = new ArrayList<>();
+        if (body == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= body.length(); i++) {
+            boolean termChar = i < body.length() && Character.isLetterOrDigit(body.charAt(i));
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                terms.add(body.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private void index(Message message, List<String> terms) {
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documents.length * 2);
+        }
+        int number = documentCount++;
+        documents[number] = message;
+        documentNumbers.put(message.getId(), number);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new Postings()).add(number);
+        }
+    }
+
+    /**
+     * Renumbers the live documents densely and rewrites every posting list, dropping the emptied terms.
+     */
+    private void compact() {
+        int[] renumbered = new int[documentCount];
+        int live = 0;
+        for (int i = 0; i < documentCount; i++) {
+            if (documents[i] != null) {
+                documents[live] = documents[i];
+                renumbered[i] = live++;
+            } else {
+                renumbered[i] = -1;
+            }
+        }
+        Arrays.fill(documents, live, documentCount, null);
+        documentNumbers = new IdLocationIndex(live);
+        for (int i = 0; i < live; i++) {
+            documentNumbers.put(documents[i].getId(), i);
+        }
+        for (Iterator<Postings> lists = postings.values().iterator(); lists.hasNext(); ) {
+            if (lists.next().renumber(renumbered) == 0) {
+                lists.remove();
+            }
+        }
+        documentCount = live;
+        holes = 0;
+    }
+
+    /**
+     * Walks the shortest list and gallops through the others from their last match, so the cost follows
+     * the shortest list and not the longest one.
+     */
+    private static int[] intersect(List<Postings> lists) {
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings shortest = lists.get(0);
+        int[] cursors = new int[lists.size()];
+        int[] hits = new int[shortest.size];
+        int count = 0;
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int candidate = shortest.numbers[i];
+            for (int l = 1; l < lists.size(); l++) {
+                Postings list = lists.get(l);
+                int at = gallop(list, cursors[l], candidate);
+                cursors[l] = at;
+                if (at == list.size) {
+                    break candidates;
+                }
+                if (list.numbers[at] != candidate) {
+                    continue candidates;
+                }
+            }
+            hits[count++] = candidate;
+        }
+        return Arrays.copyOf(hits, count);
+    }
+
+    /**
+     * Merges the lists two at a time, shortest first.
+     */
+    private static int[] union(List<Postings> lists) {
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] merged = Arrays.copyOf(lists.get(0).numbers, lists.get(0).size);
+        for (int l = 1; l < lists.size(); l++) {
+            Postings list = lists.get(l);
+            int[] next = new int[merged.length + list.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < merged.length && j < list.size) {
+                int left = merged[i];
+                int right = list.numbers[j];
+                next[count++] = Math.min(left, right);
+                if (left <= right) {
+                    i++;
+                }
+                if (right <= left) {
+                    j++;
+                }
+            }
+            while (i < merged.length) {
+                next[count++] = merged[i++];
+            }
+            while (j < list.size) {
+                next[count++] = list.numbers[j++];
+            }
+            merged = count == next.length ? next : Arrays.copyOf(next, count);
+        }
+        return merged;
+    }
+
+    /**
+     * @return index of the first number at or past <code>from</code> not less than the target, the list size if none
+     */
+    private static int gallop(Postings list, int from, int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < list.size && list.numbers[high] < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int found = Arrays.binarySearch(list.numbers, low, Math.min(high + 1, list.size), target);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    /**
+     * Sorted growable array of document numbers. Numbers are appended in increasing order,
+     * so the list stays sorted without searching.
+     */
+    private static final class Postings {
+        private int[] numbers = new int[2];
+        private int size;
+
+        void add(int number) {
+            if (size > 0 && numbers[size - 1] == number) {
+                return;
+            }
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size + (size >> 1) + 1);
+            }
+            numbers[size++] = number;
+        }
+
+        /**
+         * @param renumbered new number per old one, <code>-1</code> for a removed document
+         * @return number of postings left
+         */
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int number = renumbered[numbers[i]];
+                if (number >= 0) {
+                    numbers[kept++] = number;
+                }
+            }
+            size = kept;
+            if (numbers.length > 2 * size + 2) {
+                numbers = Arrays.copyOf(numbers, size + 2);
+            }
+            return size;
+        }
+    }
+}
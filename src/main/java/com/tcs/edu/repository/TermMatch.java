@@ -0,0 +1,19 @@
+package com.tcs.edu.repository;
+
+/**
+ * How the terms of a full-text query combine:
+ * {@link #ALL},
+ * {@link #ANY}
+ *
+ * @author Zakhar Starokozhev
+ */
+public enum TermMatch {
+    /**
+     * The message body contains every term
+     */
+    ALL,
+    /**
+     * The message body contains at least one of the terms
+     */
+    ANY
+}
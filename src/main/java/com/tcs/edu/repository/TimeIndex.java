@@ -0,0 +1,147 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code TimeIndex} orders stored messages by creation time, overall and per {@link Severity},
+ * in skip lists keyed by {@link TimeKey}. A page is a sub-map walk, so it costs O(log n + page size),
+ * the oldest message is found in O(1) and removed in O(log n).
+ *
+ * <p>Safe for concurrent use. Paging is weakly consistent: a message stored while a query is paged
+ * is returned only if its key is past the page cursor.
+ *
+ * @author Zakhar Starokozhev
+ */
+final class TimeIndex {
+    private final NavigableMap<TimeKey, Message> timeline = new ConcurrentSkipListMap<>();
+    private final List<NavigableMap<TimeKey, Message>> severityTimelines = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    TimeIndex() {
+        for (int i = 0; i < Severity.values().length; i++) {
+            severityTimelines.add(new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * @param message message with creation time assigned
+     * @param idKeyed <code>true</code> if the message id is time-ordered and serves as its key,
+     *                otherwise the key is the creation time with the next store sequence
+     */
+    void add(Message message, boolean idKeyed) {
+        add(idKeyed ? TimeKey.of(message.getId())
+                : TimeKey.of(message.getCreatedAt().toEpochMilli(), sequence.getAndIncrement()), message);
+    }
+
+    /**
+     * Bulk counterpart of {@link #add(Message, boolean)}, a batch keyed by sequence gets a contiguous block of them.
+     *
+     * @param batch   messages with creation time assigned
+     * @param idKeyed <code>true</code> if the message ids are time-ordered and serve as keys
+     */
+    void addAll(Message[] batch, boolean idKeyed) {
+        if (idKeyed) {
+            for (Message message : batch) {
+                add(TimeKey.of(message.getId()), message);
+            }
+            return;
+        }
+        long first = sequence.getAndAdd(batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            add(TimeKey.of(batch[i].getCreatedAt().toEpochMilli(), first + i), batch[i]);
+        }
+    }
+
+    /**
+     * @param by {@link Severity} to filter by, <code>null</code> for every message
+     * @return the oldest indexed message with its key, <code>null</code> if there is none
+     */
+    Map.Entry<TimeKey, Message> oldest(Severity by) {
+        return timelineOf(by).firstEntry();
+    }
+
+    /**
+     * Of concurrent calls for the same message exactly one returns <code>true</code>,
+     * the one removing it from the overall timeline.
+     *
+     * @param key     key the message was indexed with
+     * @param message indexed message
+     * @return <code>true</code> if this call removed the message, <code>false</code> if it was already gone
+     */
+    boolean remove(TimeKey key, Message message) {
+        if (timeline.remove(key, message)) {
+            severityTimelines.get(message.getSeverity().ordinal()).remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param by        {@link Severity} to filter by, <code>null</code> for every message
+     * @param from      creation time lower bound, inclusive
+     * @param to        creation time upper bound, exclusive
+     * @param limit     largest number of messages in the page
+     * @param pageToken token of the previous page, <code>null</code> for the first page
+     * @return messages in creation order
+     */
+    MessagePage page(Severity by, Instant from, Instant to, int limit, String pageToken) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+        TimeKey start = TimeKey.first(ceilMillis(Objects.requireNonNull(from, "Range start must be not NULL")));
+        TimeKey end = TimeKey.first(ceilMillis(Objects.requireNonNull(to, "Range end must be not NULL")));
+        boolean inclusive = true;
+        if (pageToken != null) {
+            TimeKey cursor = TimeKey.fromToken(pageToken);
+            if (cursor.compareTo(start) >= 0) {
+                start = cursor;
+                inclusive = false;
+            }
+        }
+        List<Message> messages = new ArrayList<>(Math.min(limit, 1024));
+        if (start.compareTo(end) >= 0) {
+            return new MessagePage(messages, null);
+        }
+        Iterator<Map.Entry<TimeKey, Message>> range = timelineOf(by).subMap(start, inclusive, end, false).entrySet().iterator();
+        TimeKey last = null;
+        while (messages.size() < limit && range.hasNext()) {
+            Map.Entry<TimeKey, Message> entry = range.next();
+            messages.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new MessagePage(messages, range.hasNext() ? last.toToken() : null);
+    }
+
+    private NavigableMap<TimeKey, Message> timelineOf(Severity by) {
+        return by == null ? timeline : severityTimelines.get(by.ordinal());
+    }
+
+    private void add(TimeKey key, Message message) {
+        timeline.put(key, message);
+        severityTimelines.get(message.getSeverity().ordinal()).put(key, message);
+    }
+
+    /**
+     * Rounds up to whole milliseconds, so that a range bound matches the millisecond precision of stored times.
+     * Instants out of the <code>long</code> millisecond range are clamped.
+     */
+    static long ceilMillis(Instant instant) {
+        try {
+            long millis = instant.toEpochMilli();
+            return instant.getNano() % 1_000_000 == 0 ? millis : millis + 1;
+        } catch (ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+}
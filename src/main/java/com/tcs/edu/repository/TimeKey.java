@@ -0,0 +1,104 @@
+package com.tcs.edu.repository;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The {@code TimeKey} orders messages by creation time. The high half holds the creation time in milliseconds
+ * shifted left by 16 bits, the rest of the key breaks ties, so every stored message gets a distinct key.
+ * A key is either a creation time with a store sequence, or a time-ordered id itself
+ * (see {@link TimeOrderedIdGenerator}), whose layout starts with the same shifted time.
+ *
+ * <p>The high half is compared signed, the low half unsigned, as for time-ordered ids.
+ *
+ * @author Zakhar Starokozhev
+ */
+final class TimeKey implements Comparable<TimeKey> {
+    private static final char SEPARATOR = '.';
+    private static final int TIME_SHIFT = 16;
+    private static final long MAX_MILLIS = Long.MAX_VALUE >> TIME_SHIFT;
+    private static final long MIN_MILLIS = Long.MIN_VALUE >> TIME_SHIFT;
+    final long high;
+    final long low;
+
+    private TimeKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param createdMillis creation time
+     * @param sequence      tie breaker, e.g. a store sequence or a slot number
+     */
+    static TimeKey of(long createdMillis, long sequence) {
+        return new TimeKey(shift(createdMillis), sequence);
+    }
+
+    /**
+     * @param id id made by {@link TimeOrderedIdGenerator}
+     */
+    static TimeKey of(UUID id) {
+        return new TimeKey(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * @return key preceding every message created at or after the passed time
+     */
+    static TimeKey first(long createdMillis) {
+        return new TimeKey(shift(createdMillis), 0);
+    }
+
+    /**
+     * @param token continuation token produced by {@link #toToken()}
+     * @return key encoded in the token
+     */
+    static TimeKey fromToken(String token) {
+        int separator = token.indexOf(SEPARATOR);
+        try {
+            if (separator < 0) {
+                throw new NumberFormatException("No separator");
+            }
+            return new TimeKey(Long.parseLong(token.substring(0, separator), Character.MAX_RADIX),
+                    Long.parseUnsignedLong(token.substring(separator + 1), Character.MAX_RADIX));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed page token: " + token, e);
+        }
+    }
+
+    long createdMillis() {
+        return high >> TIME_SHIFT;
+    }
+
+    /**
+     * @return opaque string encoding of the key
+     */
+    String toToken() {
+        return Long.toString(high, Character.MAX_RADIX) + SEPARATOR + Long.toUnsignedString(low, Character.MAX_RADIX);
+    }
+
+    @Override
+    public int compareTo(TimeKey other) {
+        int byHigh = Long.compare(high, other.high);
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimeKey timeKey = (TimeKey) o;
+        return high == timeKey.high && low == timeKey.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(high, low);
+    }
+
+    /**
+     * Clamps times out of the shifted range, they are far beyond any real creation time.
+     */
+    private static long shift(long createdMillis) {
+        return Math.max(MIN_MILLIS, Math.min(MAX_MILLIS, createdMillis)) << TIME_SHIFT;
+    }
+}
@@ -0,0 +1,97 @@
+package com.tcs.edu.repository;
+
+import java.time.Clock;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code TimeOrderedIdGenerator} makes version 7 ids: 48 bits of Unix time in milliseconds,
+ * then a 42-bit per-thread counter in the version 7 random fields, then 32 random bits.
+ * The counter starts at a random value every millisecond and is incremented for each id,
+ * borrowing the next millisecond if it overflows, so ids of a thread strictly increase, even if the clock steps back.
+ * Ids of different threads are ordered by time only.
+ *
+ * <p>Lock-free: each thread keeps its own counter, random bits come from {@link ThreadLocalRandom}.
+ * Uniqueness across threads rests on the random counter start and tail, the ids are not suitable as secrets.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class TimeOrderedIdGenerator implements IdGenerator {
+    private static final int COUNTER_BITS = 42;
+    private static final int COUNTER_LOW_BITS = 30;
+    private static final long MAX_COUNTER = (1L << COUNTER_BITS) - 1;
+    /**
+     * <code>COUNTER_START_BOUND</code> keeps random starts in the lower half, leaving room for increments
+     */
+    private static final long COUNTER_START_BOUND = 1L << (COUNTER_BITS - 1);
+
+    private final Clock clock;
+    private final ThreadLocal<Counter> counters = ThreadLocal.withInitial(Counter::new);
+
+    public TimeOrderedIdGenerator() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * @param clock {@link Clock} providing the id timestamps
+     */
+    public TimeOrderedIdGenerator(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Generator clock must be not NULL");
+    }
+
+    @Override
+    public UUID next() {
+        return counters.get().next(clock.millis());
+    }
+
+    /**
+     * Reads the clock once for the whole batch.
+     */
+    @Override
+    public UUID[] next(int count) {
+        Counter counter = counters.get();
+        long millis = clock.millis();
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = counter.next(millis);
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean isTimeOrdered() {
+        return true;
+    }
+
+    /**
+     * @param id id made by a {@code TimeOrderedIdGenerator}
+     * @return Unix time of the id in milliseconds
+     */
+    public static long timestampOf(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    /**
+     * Last timestamp and counter of one thread.
+     */
+    private static final class Counter {
+        private long millis = Long.MIN_VALUE;
+        private long value;
+
+        private UUID next(long now) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (now > millis) {
+                millis = now;
+                value = random.nextLong(COUNTER_START_BOUND);
+            } else if (++value > MAX_COUNTER) {
+                millis++;
+                value = random.nextLong(COUNTER_START_BOUND);
+            }
+            long mostSigBits = millis << 16 | 0x7000L | value >>> COUNTER_LOW_BITS;
+            long leastSigBits = 0x8000L << 48 | (value & (1L << COUNTER_LOW_BITS) - 1) << 32
+                    | random.nextInt() & 0xFFFFFFFFL;
+            return new UUID(mostSigBits, leastSigBits);
+        }
+    }
+}
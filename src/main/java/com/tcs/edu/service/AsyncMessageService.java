@@ -0,0 +1,302 @@
+package com.tcs.edu.service;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.MessageMetrics;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code AsyncMessageService} is an asynchronous front-end of {@link OrderedDistinctedMessageService}.
+ * Submissions are validated on the caller thread and queued, the queue is drained by at most
+ * <code>maxConcurrentBatches</code> tasks on the executor. A drain takes every submission waiting,
+ * up to about <code>maxBatchSize</code> messages, and stores them with one bulk call, so many small concurrent
+ * submissions reach the repository as a few large batches.
+ *
+ * <p>Line numbers stay contiguous per submission and unique across the service, as if the submissions
+ * were proceeded one by one in the order they were drained. Futures are completed on the executor threads,
+ * dependent actions doing real work should use the <code>*Async</code> methods of {@link CompletableFuture}.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class AsyncMessageService implements Closeable {
+    /**
+     * <code>DEFAULT_MAX_BATCH_SIZE</code> is the number of messages a drain stores at once by default.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+    private final OrderedDistinctedMessageService service;
+    private final Executor executor;
+    /**
+     * <code>ownedExecutor</code> is the executor created by the service, shut down on {@link #close()}
+     */
+    private final ExecutorService ownedExecutor;
+    private final int maxConcurrentBatches;
+    private final int maxBatchSize;
+    private final Queue<Submission> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    /**
+     * <code>drains</code> is the number of drain tasks scheduled or running
+     */
+    private final AtomicInteger drains = new AtomicInteger();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder submissions = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Drains on its own pool of <code>maxConcurrentBatches</code> daemon threads.
+     *
+     * @param service              {@link OrderedDistinctedMessageService} storing the batches
+     * @param maxConcurrentBatches maximum number of batches stored at the same time
+     */
+    public AsyncMessageService(OrderedDistinctedMessageService service, int maxConcurrentBatches) {
+        this(service, ownPool(maxConcurrentBatches), maxConcurrentBatches, DEFAULT_MAX_BATCH_SIZE, true);
+    }
+
+    /**
+     * @param service              {@link OrderedDistinctedMessageService} storing the batches
+     * @param executor             {@link Executor} running the drains, it is not shut down by the service
+     * @param maxConcurrentBatches maximum number of drains submitted to the executor at the same time
+     * @param maxBatchSize         number of messages after which a drain stops taking submissions into the batch
+     */
+    public AsyncMessageService(OrderedDistinctedMessageService service, Executor executor,
+                               int maxConcurrentBatches, int maxBatchSize) {
+        this(service, executor, maxConcurrentBatches, maxBatchSize, false);
+    }
+
+    private AsyncMessageService(OrderedDistinctedMessageService service, Executor executor,
+                                int maxConcurrentBatches, int maxBatchSize, boolean owned) {
+        if (maxConcurrentBatches <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+        this.service = Objects.requireNonNull(service, "Service must be not NULL");
+        this.executor = Objects.requireNonNull(executor, "Service executor must be not NULL");
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Validates a copy of the messages and queues it to be stored with other pending submissions.
+     * An invalid submission fails its future right away and does not affect the others.
+     * The array passed may be reused by the caller once the method returns.
+     *
+     * @param messages <code>Messages</code> to be proceeded.
+     * @return future of the ids of the stored messages in array order,
+     * failed with {@link LogException} if the messages are invalid or can not be stored
+     * @throws IllegalStateException if the service is closed
+     */
+    public CompletableFuture<UUID[]> submit(Message... messages) {
+        if (closed) {
+            throw new IllegalStateException("Service is closed");
+        }
+        CompletableFuture<UUID[]> future = new CompletableFuture<>();
+        Message[] copy = messages == null ? null : messages.clone();
+        try {
+            service.validate(copy);
+        } catch (LogException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        pending.add(new Submission(copy, future));
+        pendingCount.incrementAndGet();
+        submissions.increment();
+        schedule();
+        return future;
+    }
+
+    /**
+     * @param id - unique id of message logged by service
+     * @return - specific message matching id passed
+     */
+    public Message findById(UUID id) {
+        return service.findById(id);
+    }
+
+    /**
+     * @return {@link OrderedDistinctedMessageService} storing the batches, e.g. for its metrics
+     */
+    public OrderedDistinctedMessageService getService() {
+        return service;
+    }
+
+    /**
+     * @return number of submissions waiting to be drained
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return number of accepted submissions
+     */
+    public long getSubmissionCount() {
+        return submissions.sum();
+    }
+
+    /**
+     * The ratio of submissions to batches is the coalescing factor.
+     *
+     * @return number of bulk calls made to the service
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Registers the pending, submission and batch counts as gauges of the metrics passed.
+     *
+     * @param metrics {@link MessageMetrics} to report to
+     */
+    public void bindTo(MessageMetrics metrics) {
+        metrics.registerGauge("async.pending", this::getPendingCount);
+        metrics.registerGauge("async.submissions", this::getSubmissionCount);
+        metrics.registerGauge("async.batches", this::getBatchCount);
+    }
+
+    /**
+     * Stops accepting submissions and waits for the pending ones to be stored,
+     * then shuts down the executor if the service created it.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        closed = true;
+        try {
+            while (drains.get() > 0 || !pending.isEmpty()) {
+                schedule();
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing service");
+        } finally {
+            if (ownedExecutor != null) {
+                ownedExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Starts one more drain if the queue is not empty and fewer than {@link #maxConcurrentBatches} are running.
+     * A rejected drain fails the pending submissions.
+     */
+    private void schedule() {
+        int running;
+        while (!pending.isEmpty() && (running = drains.get()) < maxConcurrentBatches) {
+            if (drains.compareAndSet(running, running + 1)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    drains.decrementAndGet();
+                    fail(e);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stores pending submissions batch by batch until the queue is empty.
+     * Rechecks the queue on exit, a submission queued while the last drain was leaving is not stranded.
+     */
+    private void drain() {
+        List<Submission> batch = new ArrayList<>();
+        try {
+            while (true) {
+                int size = 0;
+                Submission submission;
+                while (size < maxBatchSize && (submission = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    batch.add(submission);
+                    size += submission.messages.length;
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                store(batch, size);
+                batch.clear();
+            }
+        } finally {
+            drains.decrementAndGet();
+            schedule();
+        }
+    }
+
+    /**
+     * Stores the batch with one call and hands every submission its slice of the ids.
+     */
+    private void store(List<Submission> batch, int size) {
+        Message[] messages = new Message[size];
+        int position = 0;
+        for (Submission submission : batch) {
+            System.arraycopy(submission.messages, 0, messages, position, submission.messages.length);
+            position += submission.messages.length;
+        }
+        UUID[] ids;
+        try {
+            ids = service.store(messages);
+            batches.increment();
+        } catch (RuntimeException e) {
+            for (Submission submission : batch) {
+                submission.future.completeExceptionally(new LogException("Message processing error", e));
+            }
+            return;
+        }
+        position = 0;
+        for (Submission submission : batch) {
+            UUID[] submissionIds = new UUID[submission.messages.length];
+            System.arraycopy(ids, position, submissionIds, 0, submissionIds.length);
+            position += submissionIds.length;
+            submission.future.complete(submissionIds);
+        }
+    }
+
+    private void fail(RejectedExecutionException e) {
+        Submission submission;
+        while ((submission = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            submission.future.completeExceptionally(new LogException("Message processing error", e));
+        }
+    }
+
+    private static ExecutorService ownPool(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+        AtomicInteger number = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "async-message-service-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Messages of one {@link #submit(Message...)} call and the future of their ids.
+     */
+    private static final class Submission {
+        private final Message[] messages;
+        private final CompletableFuture<UUID[]> future;
+
+        private Submission(Message[] messages, CompletableFuture<UUID[]> future) {
+            this.messages = messages;
+            this.future = future;
+        }
+    }
+}
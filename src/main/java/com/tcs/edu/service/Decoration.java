@@ -0,0 +1,21 @@
+package com.tcs.edu.service;
+
+/**
+ * When {@link OrderedDistinctedMessageService} renders the decorated body:
+ * {@link #EAGER},
+ * {@link #LAZY},
+ *
+ * @author Zakhar Starokozhev
+ */
+public enum Decoration {
+    /**
+     * Messages are decorated before they are stored
+     */
+    EAGER,
+    /**
+     * Messages are stored undecorated with their line number and capture time,
+     * the decorated body is rendered when they are read through the service.
+     * Repository change feeds and term queries return the undecorated messages
+     */
+    LAZY
+}
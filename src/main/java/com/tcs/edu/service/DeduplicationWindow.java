@@ -0,0 +1,254 @@
+package com.tcs.edu.service;
+
+import com.tcs.edu.domain.Message;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The {@code DeduplicationWindow} remembers fingerprints of recently seen messages to recognise repeats
+ * across {@link MessageService#process} calls.
+ *
+ * <p>A fingerprint is a 64-bit hash of the severity and the body, the message id is not part of it.
+ * Fingerprints are kept in a primitive open-addressing set and a ring buffer of insertion order,
+ * the oldest ones are forgotten once the window holds <code>maxEntries</code> or they are older than <code>maxAge</code>.
+ * Memory is fixed at construction: 24 to 40 bytes per entry, 8 more with <code>maxAge</code>.
+ *
+ * <p>Two different messages may share a fingerprint, then the later one is taken for a repeat,
+ * see {@link #estimatedFalsePositiveRate()}. Thread-safe.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class DeduplicationWindow {
+    /**
+     * <code>DEFAULT_MAX_ENTRIES</code> is the window size used by the service unless another window is passed.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final long EMPTY = 0;
+
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    private final Clock clock;
+    private final long[] table;
+    private final long[] order;
+    private final long[] seenAt;
+    private int head;
+    private int size;
+    private long checked;
+    private long repeats;
+
+    /**
+     * Count bounded window.
+     *
+     * @param maxEntries number of most recent distinct messages remembered
+     */
+    public DeduplicationWindow(int maxEntries) {
+        this(maxEntries, null, Clock.systemUTC());
+    }
+
+    /**
+     * @param maxEntries number of most recent distinct messages remembered
+     * @param maxAge     time a message is remembered for, <code>null</code> for count bound only
+     * @param clock      {@link Clock} measuring the age
+     */
+    public DeduplicationWindow(int maxEntries, Duration maxAge, Clock clock) {
+        if (maxEntries <= 0 || maxEntries > 1 << 29) {
+            throw new IllegalArgumentException("Window size out of range: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAge == null ? Long.MAX_VALUE : maxAge.toMillis();
+        this.clock = Objects.requireNonNull(clock, "Window clock must be not NULL");
+        this.table = new long[Integer.highestOneBit(maxEntries * 2 - 1) << 1];
+        this.order = new long[maxEntries];
+        this.seenAt = maxAge == null ? null : new long[maxEntries];
+    }
+
+    /**
+     * Records the message in the window.
+     *
+     * @param message valid <code>Message</code>
+     * @return <code>true</code> if the message was not seen within the window
+     */
+    public boolean firstSeen(Message message) {
+        return firstSeen(fingerprint(message));
+    }
+
+    /**
+     * Forgets a message recorded by {@link #firstSeen(Message)}, e.g. because storing it failed,
+     * so a retry of it is not taken for a repeat. The search starts from the most recent fingerprint,
+     * so forgetting a message just recorded is cheap.
+     *
+     * @param message valid <code>Message</code>, ignored if it is not remembered
+     */
+    public void forget(Message message) {
+        forget(fingerprint(message));
+    }
+
+    /**
+     * Forgets messages recorded by {@link #firstSeen(Message)} in array order, under one lock and newest first,
+     * so every fingerprint is found at the tail of the ring and nothing is shifted.
+     *
+     * @param messages valid <code>Message</code>s, the ones not remembered are ignored
+     */
+    public void forgetAll(Message[] messages) {
+        long[] fingerprints = new long[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            fingerprints[i] = fingerprint(messages[i]);
+        }
+        synchronized (this) {
+            for (int i = fingerprints.length - 1; i >= 0; i--) {
+                forget(fingerprints[i]);
+            }
+        }
+    }
+
+    /**
+     * @return number of fingerprints currently remembered
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return number of messages checked by {@link #firstSeen(Message)}
+     */
+    public synchronized long getCheckedCount() {
+        return checked;
+    }
+
+    /**
+     * @return number of messages recognised as repeats
+     */
+    public synchronized long getRepeatCount() {
+        return repeats;
+    }
+
+    /**
+     * Chance of a distinct message taken for a repeat: the current fingerprint count over the 2^64 hash space.
+     */
+    public synchronized double estimatedFalsePositiveRate() {
+        return size / 0x1p64;
+    }
+
+    /**
+     * @return bytes held by the window arrays
+     */
+    public long memoryBytes() {
+        return (long) Long.BYTES * (table.length + order.length + (seenAt == null ? 0 : seenAt.length));
+    }
+
+    /**
+     * 64-bit FNV-1a over the severity and the body followed by a finalizing mix, never <code>0</code>.
+     */
+    static long fingerprint(Message message) {
+        long hash = 0xCBF29CE484222325L ^ message.getSeverity().ordinal();
+        String body = message.getBody();
+        for (int i = 0; i < body.length(); i++) {
+            hash = (hash ^ body.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private synchronized boolean firstSeen(long fingerprint) {
+        checked++;
+        long now = seenAt == null ? 0 : clock.millis();
+        expire(now);
+        if (contains(fingerprint)) {
+            repeats++;
+            return false;
+        }
+        if (size == maxEntries) {
+            removeOldest();
+        }
+        int tail = (head + size) % maxEntries;
+        order[tail] = fingerprint;
+        if (seenAt != null) {
+            seenAt[tail] = now;
+        }
+        size++;
+        insert(fingerprint);
+        return true;
+    }
+
+    /**
+     * Removes the fingerprint from the table and closes its gap in the ring by shifting the later entries back.
+     */
+    private synchronized void forget(long fingerprint) {
+        if (!contains(fingerprint)) {
+            return;
+        }
+        int at = size - 1;
+        while (order[(head + at) % maxEntries] != fingerprint) {
+            at--;
+        }
+        for (; at < size - 1; at++) {
+            int to = (head + at) % maxEntries;
+            int from = (head + at + 1) % maxEntries;
+            order[to] = order[from];
+            if (seenAt != null) {
+                seenAt[to] = seenAt[from];
+            }
+        }
+        size--;
+        remove(fingerprint);
+    }
+
+    private void expire(long now) {
+        if (seenAt != null) {
+            while (size > 0 && now - seenAt[head] >= maxAgeMillis) {
+                removeOldest();
+            }
+        }
+    }
+
+    private void removeOldest() {
+        remove(order[head]);
+        head = (head + 1) % maxEntries;
+        size--;
+    }
+
+    private boolean contains(long fingerprint) {
+        int mask = table.length - 1;
+        for (int slot = (int) fingerprint & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(long fingerprint) {
+        int mask = table.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = fingerprint;
+    }
+
+    /**
+     * Linear probing removal with backward shift, keeps probe chains intact without tombstones.
+     */
+    private void remove(long fingerprint) {
+        int mask = table.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (table[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        int gap = slot;
+        for (int next = (gap + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+            int home = (int) table[next] & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+        }
+        table[gap] = EMPTY;
+    }
+}
@@ -4,10 +4,16 @@ package com.tcs.edu.service;
  * Displaying repeated messages:
  * {@link #DOUBLES},
  * {@link #DISTINCT},
+ * {@link #DISTINCT_WINDOW},
  *
  * @author Zakhar Starokozhev
  */
 public enum Doubling {
     DOUBLES,
-    DISTINCT
+    DISTINCT,
+    /**
+     * Repeats are removed within the call and against messages proceeded by earlier calls
+     * still kept in the service {@link DeduplicationWindow}
+     */
+    DISTINCT_WINDOW
 }
@@ -4,7 +4,9 @@ import com.tcs.edu.decorator.Severity;
 import com.tcs.edu.domain.Message;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Processes message or messages according to the given parameters, including sorting and message order.
@@ -33,6 +35,23 @@ public interface MessageService {
      */
     void process(Order order, Doubling doubling, Message... messages) throws LogException;
 
+    /**
+     * Streaming counterpart of {@link #process(Message...)}, messages are proceeded one at a time.
+     *
+     * @param messages <code>Messages</code> to be proceeded, the stream is not closed.
+     */
+    void process(Stream<Message> messages) throws LogException;
+
+    /**
+     * Streaming counterpart of {@link #process(Order, Doubling, Message...)}, messages are proceeded one at a time
+     * with bounded memory. Messages proceeded before an invalid one stay stored.
+     *
+     * @param messages <code>Messages</code> to be proceeded.
+     * @param order    Defines the order in which messages are proceeded.
+     * @param doubling Presence of repeated messages.
+     */
+    void process(Iterator<Message> messages, Order order, Doubling doubling) throws LogException;
+
     /**
      * @return all logged messages
      */
@@ -1,44 +1,163 @@
 package com.tcs.edu.service;
 
 import com.tcs.edu.decorator.MessageDecorator;
+import com.tcs.edu.decorator.MessageDecoratorChain;
 import com.tcs.edu.decorator.Severity;
 import com.tcs.edu.decorator.SeverityMessageDecorator;
 import com.tcs.edu.decorator.TypographicMessageDecorator;
 import com.tcs.edu.domain.Message;
+import com.tcs.edu.domain.RawMessage;
+import com.tcs.edu.metrics.MessageMetrics;
 import com.tcs.edu.repository.MessageRepository;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * {@code OrderedDistinctedMessageService} processes decorated messages with typography and severity labels to storage.
  * Allows to specify the order and/or filtering for repetitions.
  *
+ * <p>In {@link Decoration#LAZY} mode the repository gets {@link RawMessage}s: the body as passed with its line number
+ * and timestamp, the decorated body is rendered by {@link #findAll()}, {@link #findAllBySeverity(Severity)}
+ * and {@link #findById(UUID)}, identical to the one stored in {@link Decoration#EAGER} mode.
+ * The repository must {@link MessageRepository#keepsInstances() keep} the messages it is given,
+ * ones rebuilding them from their own storage would lose the line number and timestamp.
+ * Reads bypassing the service, e.g. the repository change feed or its term queries, see the raw messages:
+ * terms match the undecorated body, and {@link #render(Message)} turns what they return into the decorated message.
+ *
  * @author Zakhar Starokozhev
  */
 public final class OrderedDistinctedMessageService extends ValidatedMessageService implements MessageService {
-    private final MessageDecorator decorator;
+    /**
+     * <code>STREAM_CHUNK_SIZE</code> is the number of messages held in memory while streaming in {@link Order#DESC}.
+     */
+    static final int STREAM_CHUNK_SIZE = 10_000;
+    /**
+     * <code>PARALLEL_THRESHOLD</code> is the smallest batch decorated in parallel, smaller ones stay on the caller thread.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+    /**
+     * <code>DEFAULT_RENDER_CACHE_SIZE</code> is the number of rendered messages kept by the short {@link Decoration#LAZY} constructor.
+     */
+    public static final int DEFAULT_RENDER_CACHE_SIZE = 1024;
+    /**
+     * <code>chain</code> fuses severity, service and typographic decoration into one pass per message
+     */
+    private final MessageDecoratorChain chain;
     private final MessageRepository repository;
+    /**
+     * <code>pool</code> decorates large batches in parallel, <code>null</code> for sequential processing
+     */
+    private final ForkJoinPool pool;
+    /**
+     * <code>window</code> recognises repeats across calls for {@link Doubling#DISTINCT_WINDOW},
+     * the default one is created on first use by {@link #window()}, so services never deduplicating across calls
+     * do not pay for its tables
+     */
+    private volatile DeduplicationWindow window;
+    private final Decoration decoration;
+    /**
+     * <code>renderCache</code> keeps the recently rendered {@link Decoration#LAZY} messages, <code>null</code> if disabled
+     */
+    private final RenderCache renderCache;
     /**
      * <code>messageCount</code> stores the proceeded line number
      */
     private final AtomicInteger messageCount = new AtomicInteger(1);
+    /**
+     * <code>metrics</code> counts processed and rejected messages and times every processing stage
+     */
+    private final MessageMetrics metrics = new MessageMetrics();
 
     /**
      * @param decorator  {@link MessageDecorator} specific addition to decorate process
      * @param repository {@link MessageRepository} storage for processed messages
      */
     public OrderedDistinctedMessageService(MessageDecorator decorator, MessageRepository repository) {
-        this.decorator = Objects.requireNonNull(decorator, "Service decorator must be not NULL");
+        this(decorator, repository, null, null, Decoration.EAGER, 0);
+    }
+
+    /**
+     * Parallel mode: batches of at least {@link #PARALLEL_THRESHOLD} messages are decorated across the pool threads,
+     * the line numbers and the stored order stay the same as in sequential mode.
+     *
+     * @param decorator  {@link MessageDecorator} specific addition to decorate process, must be thread-safe
+     * @param repository {@link MessageRepository} storage for processed messages
+     * @param pool       {@link ForkJoinPool} running the decoration, e.g. {@link ForkJoinPool#commonPool()}
+     */
+    public OrderedDistinctedMessageService(MessageDecorator decorator, MessageRepository repository, ForkJoinPool pool) {
+        this(decorator, repository, Objects.requireNonNull(pool, "Service pool must be not NULL"), null,
+                Decoration.EAGER, 0);
+    }
+
+    /**
+     * @param decorator  {@link MessageDecorator} specific addition to decorate process
+     * @param repository {@link MessageRepository} storage for processed messages
+     * @param pool       {@link ForkJoinPool} for parallel decoration, <code>null</code> for sequential one
+     * @param window     {@link DeduplicationWindow} used by {@link Doubling#DISTINCT_WINDOW}
+     */
+    public OrderedDistinctedMessageService(MessageDecorator decorator, MessageRepository repository,
+                                           ForkJoinPool pool, DeduplicationWindow window) {
+        this(decorator, repository, pool, Objects.requireNonNull(window, "Service deduplication window must be not NULL"),
+                Decoration.EAGER, 0);
+    }
+
+    /**
+     * Sequential service caching {@link #DEFAULT_RENDER_CACHE_SIZE} rendered messages in {@link Decoration#LAZY} mode.
+     *
+     * @param decorator  {@link MessageDecorator} specific addition to decorate process
+     * @param repository {@link MessageRepository} storage for processed messages
+     * @param decoration {@link Decoration} mode
+     */
+    public OrderedDistinctedMessageService(MessageDecorator decorator, MessageRepository repository,
+                                           Decoration decoration) {
+        this(decorator, repository, null, null, decoration, DEFAULT_RENDER_CACHE_SIZE);
+    }
+
+    /**
+     * @param decorator       {@link MessageDecorator} specific addition to decorate process,
+     *                        a {@link com.tcs.edu.decorator.DecoratorSegment} for {@link Decoration#LAZY} mode
+     * @param repository      {@link MessageRepository} storage for processed messages
+     * @param pool            {@link ForkJoinPool} for parallel decoration, <code>null</code> for sequential one
+     * @param window          {@link DeduplicationWindow} used by {@link Doubling#DISTINCT_WINDOW},
+     *                        <code>null</code> for one of {@link DeduplicationWindow#DEFAULT_MAX_ENTRIES} created on first use
+     * @param decoration      {@link Decoration} mode
+     * @param renderCacheSize number of rendered messages kept in {@link Decoration#LAZY} mode, <code>0</code> for none
+     * @throws IllegalArgumentException if lazy decoration is asked for a decorator that is not a segment
+     *                                  or a repository not {@link MessageRepository#keepsInstances() keeping} messages
+     */
+    public OrderedDistinctedMessageService(MessageDecorator decorator, MessageRepository repository,
+                                           ForkJoinPool pool, DeduplicationWindow window,
+                                           Decoration decoration, int renderCacheSize) {
+        this.chain = chainOf(Objects.requireNonNull(decorator, "Service decorator must be not NULL"));
         this.repository = Objects.requireNonNull(repository, "Service repository must be not NULL");
+        this.pool = pool;
+        this.window = window;
+        this.decoration = Objects.requireNonNull(decoration, "Service decoration must be not NULL");
+        if (decoration == Decoration.LAZY && !chain.isFused()) {
+            throw new IllegalArgumentException("Lazy decoration needs a decorator segment");
+        }
+        if (decoration == Decoration.LAZY && !repository.keepsInstances()) {
+            throw new IllegalArgumentException("Lazy decoration needs a repository keeping the messages stored, "
+                    + repository.getClass().getSimpleName() + " rebuilds them");
+        }
+        if (renderCacheSize < 0) {
+            throw new IllegalArgumentException("Render cache size must not be negative");
+        }
+        this.renderCache = decoration == Decoration.LAZY && renderCacheSize > 0 ? new RenderCache(renderCacheSize) : null;
+        metrics.registerGauge("repository.size", repository::count);
+        for (Severity severity : Severity.values()) {
+            metrics.registerGauge("repository.size." + severity, () -> repository.countBySeverity(severity));
+        }
     }
 
     public void process(Message... messages) throws LogException {
-        try {
-            isArgsValid(messages);
-        } catch (IllegalArgumentException e) {
-            throw new LogException("Message processing error", e);
-        }
+        validate(messages);
         proceedToRepository(messages);
     }
 
@@ -47,24 +166,133 @@ public final class OrderedDistinctedMessageService extends ValidatedMessageServi
     }
 
     public void process(Doubling doubling, Message... messages) throws LogException {
-        process(processUnique(doubling, messages));
+        process(Order.ASC, doubling, messages);
     }
 
+    /**
+     * {@link Doubling#DISTINCT_WINDOW} validates the messages before recording them in the window,
+     * a call with repeats only stores nothing. Messages that fail to be decorated or stored are forgotten
+     * by the window, so a retry of the call is not dropped as a repeat.
+     */
     public void process(Order order, Doubling doubling, Message... messages) throws LogException {
         messages = processReverse(order, messages);
+        if (doubling == Doubling.DISTINCT_WINDOW) {
+            validate(messages);
+            Message[] firstSeen = processWindow(messages);
+            if (firstSeen.length == 0) {
+                return;
+            }
+            try {
+                proceedToRepository(firstSeen);
+            } catch (RuntimeException e) {
+                window().forgetAll(firstSeen);
+                throw e;
+            }
+            return;
+        }
         process(processUnique(doubling, messages));
     }
 
+    /**
+     * @return {@link DeduplicationWindow} of the service, e.g. to report its statistics, created if not used yet
+     */
+    public DeduplicationWindow getDeduplicationWindow() {
+        return window();
+    }
+
+    /**
+     * Latencies are recorded per message, a batch counts each of its messages with the mean duration.
+     * The repository size gauges are read on every snapshot.
+     *
+     * @return {@link MessageMetrics} of the service, e.g. to publish them to a {@link com.tcs.edu.metrics.MetricsSink}
+     */
+    public MessageMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void process(Stream<Message> messages) throws LogException {
+        if (messages == null) {
+            throw new LogException("Message processing error",
+                    new IllegalArgumentException("Null passed instead of Messages..."));
+        }
+        process(messages.iterator(), Order.ASC, Doubling.DOUBLES);
+    }
+
+    /**
+     * Validates, decorates and stores messages while reading them.
+     * {@link Order#DESC} consumes the whole input first, spilling it to disk in chunks of {@link #STREAM_CHUNK_SIZE},
+     * so nothing is stored if any of the messages is invalid.
+     * {@link Doubling#DISTINCT} keeps every distinct message seen, memory grows with their number,
+     * {@link Doubling#DISTINCT_WINDOW} is bounded by the service {@link DeduplicationWindow}.
+     */
+    public void process(Iterator<Message> messages, Order order, Doubling doubling) throws LogException {
+        try {
+            if (messages == null) {
+                throw new IllegalArgumentException("Null passed instead of Messages...");
+            }
+            Iterator<Message> validated = new ValidatingIterator(messages);
+            if (order == Order.DESC) {
+                try (SpillingMessageReverser reversed = new SpillingMessageReverser(validated, STREAM_CHUNK_SIZE)) {
+                    proceedToRepository(reversed, doubling);
+                }
+            } else {
+                proceedToRepository(validated, doubling);
+            }
+        } catch (IllegalArgumentException | IOException | UncheckedIOException e) {
+            throw new LogException("Message processing error", e);
+        }
+    }
+
+    /**
+     * In {@link Decoration#LAZY} mode the messages are rendered as they are iterated.
+     */
     public Collection<Message> findAll() {
-        return repository.findAll();
+        return rendered(repository.findAll());
     }
 
+    /**
+     * In {@link Decoration#LAZY} mode the messages are rendered as they are iterated.
+     */
     public Collection<Message> findAllBySeverity(Severity by) {
-        return repository.findAllBySeverity(by);
+        return rendered(repository.findAllBySeverity(by));
     }
 
     public Message findById(UUID id) {
-        return repository.findByPrimaryKey(id);
+        Message stored = repository.findByPrimaryKey(id);
+        return stored == null ? null : render(stored);
+    }
+
+    /**
+     * @return {@link Decoration} mode of the service
+     */
+    public Decoration getDecoration() {
+        return decoration;
+    }
+
+    /**
+     * Decorates and stores messages already checked with {@link #validate(Message[])} as one batch,
+     * used by {@link AsyncMessageService} to store coalesced submissions.
+     *
+     * @param messages valid messages, they get contiguous line numbers in array order
+     * @return ids of the stored messages in array order
+     */
+    UUID[] store(Message[] messages) {
+        return proceedToRepository(messages);
+    }
+
+    /**
+     * Checks the messages with {@link #isArgsValid(Message...)}, a rejected call is counted in {@link #metrics}.
+     */
+    void validate(Message[] messages) throws LogException {
+        long start = System.nanoTime();
+        try {
+            isArgsValid(messages);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected(messages);
+            throw new LogException("Message processing error", e);
+        } finally {
+            metrics.recordSince(MessageMetrics.VALIDATION, start, messages == null || messages.length == 0 ? 1 : messages.length);
+        }
     }
 
     /**
@@ -109,17 +337,288 @@ public final class OrderedDistinctedMessageService extends ValidatedMessageServi
     }
 
     /**
-     * Put decorated messages to storage (i.e. repository)
-     * Side effect on global {@link #messageCount} - increment for each message passed in.
+     * Drops messages seen within the {@link #window}, including repeats inside the array, and records the rest.
      *
-     * @param messages - message to be stored in repository
+     * @param messages valid array of <code>Message</>s to filter
+     * @return array of <code>Message</>s seen for the first time
      */
-    private void proceedToRepository(Message... messages) {
+    private Message[] processWindow(Message[] messages) {
+        Message[] firstSeen = new Message[messages.length];
+        int count = 0;
         for (Message message : messages) {
-            message = new SeverityMessageDecorator().decorate(message);
-            message = decorator.decorate(message);
-            message = new TypographicMessageDecorator(messageCount.getAndIncrement()).decorate(message);
-            repository.create(message);
+            if (window().firstSeen(message)) {
+                firstSeen[count++] = message;
+            }
+        }
+        return count == messages.length ? messages : Arrays.copyOf(firstSeen, count);
+    }
+
+    /**
+     * Put decorated messages to storage (i.e. repository) in one bulk call.
+     * Side effect on global {@link #messageCount} - a contiguous block of line numbers is reserved for the batch.
+     *
+     * @param messages - message to be stored in repository
+     * @return ids of the stored messages
+     */
+    private UUID[] proceedToRepository(Message... messages) {
+        long start = System.nanoTime();
+        Message[] decorated = new Message[messages.length];
+        int firstLine = reserveLines(messages.length);
+        if (pool != null && messages.length >= PARALLEL_THRESHOLD) {
+            pool.invoke(new DecorationTask(messages, decorated, firstLine, 0, messages.length,
+                    Math.max(1024, messages.length / (pool.getParallelism() * 4))));
+        } else {
+            for (int i = 0; i < messages.length; i++) {
+                decorated[i] = decorate(messages[i], firstLine + i);
+            }
+        }
+        metrics.recordSince(MessageMetrics.DECORATION, start, messages.length);
+        return persist(decorated);
+    }
+
+    /**
+     * Stores decorated messages in one bulk call and counts them as processed.
+     *
+     * @param decorated messages with line numbers already applied
+     * @return ids of the stored messages
+     */
+    UUID[] persist(Message[] decorated) {
+        long start = System.nanoTime();
+        UUID[] ids = repository.createAll(decorated);
+        metrics.recordSince(MessageMetrics.REPOSITORY_CREATE, start, decorated.length);
+        metrics.processed(decorated);
+        return ids;
+    }
+
+    /**
+     * @return {@link #window}, the default one is created by the first caller
+     */
+    private DeduplicationWindow window() {
+        DeduplicationWindow current = window;
+        if (current == null) {
+            synchronized (this) {
+                current = window;
+                if (current == null) {
+                    current = new DeduplicationWindow(DeduplicationWindow.DEFAULT_MAX_ENTRIES);
+                    window = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Side effect on global {@link #messageCount}.
+     *
+     * @param count number of line numbers to reserve
+     * @return first line number of the contiguous block reserved
+     */
+    int reserveLines(int count) {
+        return messageCount.getAndAdd(count);
+    }
+
+    /**
+     * Streaming counterpart of {@link #proceedToRepository(Message...)}, stores messages one by one.
+     *
+     * @param messages - valid messages to be stored in repository
+     * @param doubles  {@link Doubling} filter type
+     */
+    private void proceedToRepository(Iterator<Message> messages, Doubling doubles) {
+        Set<Message> seen = doubles == Doubling.DISTINCT ? new HashSet<>() : null;
+        boolean empty = true;
+        while (messages.hasNext()) {
+            Message message = messages.next();
+            empty = false;
+            if (doubles == Doubling.DISTINCT_WINDOW ? window().firstSeen(message) : seen == null || seen.add(message)) {
+                long start = System.nanoTime();
+                Message decorated;
+                try {
+                    decorated = decorate(message);
+                    start = metrics.recordSince(MessageMetrics.DECORATION, start);
+                    repository.create(decorated);
+                } catch (RuntimeException e) {
+                    if (doubles == Doubling.DISTINCT_WINDOW) {
+                        window().forget(message);
+                    }
+                    throw e;
+                }
+                metrics.recordSince(MessageMetrics.REPOSITORY_CREATE, start);
+                metrics.processed(decorated);
+            }
+        }
+        if (empty) {
+            throw new IllegalArgumentException("Empty Messages passed");
+        }
+    }
+
+    /**
+     * Applies severity, service and typographic decoration with the next line number.
+     * Side effect on global {@link #messageCount} - increment for each call.
+     */
+    private Message decorate(Message message) {
+        return decorate(message, messageCount.getAndIncrement());
+    }
+
+    /**
+     * @param lineNumber line number already reserved for the message
+     * @return decorated message, or in {@link Decoration#LAZY} mode the {@link RawMessage} to render it from
+     */
+    Message decorate(Message message, int lineNumber) {
+        return decoration == Decoration.LAZY ? chain.capture(message, lineNumber) : chain.decorate(message, lineNumber);
+    }
+
+    private Collection<Message> rendered(Collection<Message> stored) {
+        if (decoration == Decoration.EAGER) {
+            return stored;
+        }
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Message> iterator() {
+                Iterator<Message> messages = stored.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return messages.hasNext();
+                    }
+
+                    @Override
+                    public Message next() {
+                        return render(messages.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return stored.size();
+            }
+        };
+    }
+
+    /**
+     * Renders a {@link RawMessage} with the id and creation time of the stored one, other messages are returned as is.
+     * Used for messages read from the repository directly, e.g. pushed by its change feed.
+     *
+     * @param stored message read from the repository of the service
+     * @return decorated message, the same one {@link #findById(UUID)} returns
+     */
+    public Message render(Message stored) {
+        if (!(stored instanceof RawMessage)) {
+            return stored;
+        }
+        UUID id = stored.getId();
+        Message rendered = renderCache == null || id == null ? null : renderCache.get(id);
+        if (rendered == null) {
+            rendered = chain.render((RawMessage) stored);
+            rendered.setId(id);
+            rendered.setCreatedAt(stored.getCreatedAt());
+            if (renderCache != null && id != null) {
+                renderCache.put(id, rendered);
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * @param decorator service specific decoration placed between severity and typographic ones
+     * @return chain applying severity, service and typographic decoration
+     */
+    private static MessageDecoratorChain chainOf(MessageDecorator decorator) {
+        return MessageDecoratorChain.builder()
+                .append(new SeverityMessageDecorator())
+                .append(decorator)
+                .append(new TypographicMessageDecorator())
+                .build();
+    }
+
+    /**
+     * Least recently used rendered messages by id, guarded by its own monitor.
+     */
+    private static final class RenderCache {
+        private final Map<UUID, Message> rendered;
+
+        private RenderCache(int maxEntries) {
+            this.rendered = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, Message> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized Message get(UUID id) {
+            return rendered.get(id);
+        }
+
+        synchronized void put(UUID id, Message message) {
+            rendered.put(id, message);
+        }
+    }
+
+    /**
+     * Decorates a range of the batch, splitting it in halves down to <code>chunkSize</code> messages.
+     * Each message gets the line number of its position in the batch.
+     */
+    private final class DecorationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Message[] messages;
+        private final Message[] decorated;
+        private final int firstLine;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private DecorationTask(Message[] messages, Message[] decorated, int firstLine, int from, int to, int chunkSize) {
+            this.messages = messages;
+            this.decorated = decorated;
+            this.firstLine = firstLine;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    decorated[i] = decorate(messages[i], firstLine + i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecorationTask(messages, decorated, firstLine, from, middle, chunkSize),
+                        new DecorationTask(messages, decorated, firstLine, middle, to, chunkSize));
+            }
+        }
+    }
+
+    /**
+     * Checks every message with {@link #isArgValid(Message)} as it is read, a rejected message is counted in {@link #metrics}.
+     */
+    private final class ValidatingIterator implements Iterator<Message> {
+        private final Iterator<Message> messages;
+
+        private ValidatingIterator(Iterator<Message> messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return messages.hasNext();
+        }
+
+        @Override
+        public Message next() {
+            Message message = messages.next();
+            long start = System.nanoTime();
+            try {
+                isArgValid(message);
+            } catch (IllegalArgumentException e) {
+                metrics.rejected(message);
+                throw e;
+            } finally {
+                metrics.recordSince(MessageMetrics.VALIDATION, start);
+            }
+            return message;
         }
     }
 }
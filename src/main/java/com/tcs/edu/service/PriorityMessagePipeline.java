@@ -0,0 +1,306 @@
+package com.tcs.edu.service;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.LatencyHistogram;
+import com.tcs.edu.metrics.MessageMetrics;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code PriorityMessagePipeline} is an ingestion front-end of {@link OrderedDistinctedMessageService}
+ * with a bounded queue per {@link Severity}, so <code>MAJOR</code> messages do not wait behind floods of <code>MINOR</code> ones.
+ * The queues lock producers and the drainer separately, so a flood of producers does not hold up the drainer.
+ * A single drainer thread takes batches of at most <code>maxBatchSize</code> messages from the queues
+ * as the {@link PriorityPolicy} says, decorates and stores each batch with one bulk call.
+ *
+ * <p>Line numbers are reserved per batch and follow the storing order, not the arrival order,
+ * so they stay contiguous and unique across the service. Under {@link PriorityPolicy.Draining#STRICT} draining
+ * a <code>MAJOR</code> message waits at most for the batch being stored and the <code>MAJOR</code> messages queued before it.
+ * Above the high-water mark of the policy <code>MINOR</code> messages are shed or sampled on the producer thread.
+ * The time from publication to storage is recorded per severity as <code>pipeline.SEVERITY</code> latency.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class PriorityMessagePipeline implements Closeable {
+    /**
+     * <code>DEFAULT_CAPACITY</code> is the size of each severity queue used by the short constructor.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    /**
+     * <code>DEFAULT_MAX_BATCH_SIZE</code> is the largest batch stored at once by default, it bounds the wait of a higher severity.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final OrderedDistinctedMessageService service;
+    private final MessageMetrics metrics;
+    private final PriorityPolicy policy;
+    private final int maxBatchSize;
+    private final List<BlockingQueue<Entry>> queues = new ArrayList<>();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[SEVERITIES.length];
+    /**
+     * <code>queued</code> counts the messages of every queue, compared against the high-water mark
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    /**
+     * <code>accepted</code> and <code>completed</code> let {@link #flush()} wait for its messages,
+     * a message is completed once it is stored or failed.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong minorArrivals = new AtomicLong();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread drainer;
+    private volatile boolean parked;
+    private volatile boolean closed;
+
+    /**
+     * @param service {@link OrderedDistinctedMessageService} decorating and storing the messages
+     * @param policy  {@link PriorityPolicy} draining the queues and shedding <code>MINOR</code> messages
+     */
+    public PriorityMessagePipeline(OrderedDistinctedMessageService service, PriorityPolicy policy) {
+        this(service, policy, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Starts the drainer thread.
+     *
+     * @param service      {@link OrderedDistinctedMessageService} decorating and storing the messages
+     * @param policy       {@link PriorityPolicy} draining the queues and shedding <code>MINOR</code> messages
+     * @param capacity     largest number of messages queued per severity
+     * @param maxBatchSize largest number of messages stored with one repository call
+     */
+    public PriorityMessagePipeline(OrderedDistinctedMessageService service, PriorityPolicy policy,
+                                   int capacity, int maxBatchSize) {
+        if (capacity <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Pipeline capacity and batch size must be positive");
+        }
+        this.service = Objects.requireNonNull(service, "Pipeline service must be not NULL");
+        this.policy = Objects.requireNonNull(policy, "Pipeline policy must be not NULL");
+        this.metrics = service.getMetrics();
+        this.maxBatchSize = maxBatchSize;
+        for (Severity severity : SEVERITIES) {
+            queues.add(new LinkedBlockingQueue<>(capacity));
+            latencies[severity.ordinal()] = metrics.latency(MessageMetrics.PIPELINE + "." + severity);
+        }
+        this.drainer = new Thread(this::drain, "message-priority-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Validates the message and queues it by its severity, waits while that queue is full.
+     *
+     * @param message <code>Message</code> to be proceeded
+     * @return <code>false</code> if the message was shed by the {@link PriorityPolicy}
+     * @throws LogException          if the message is invalid or the producer is interrupted while waiting
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public boolean publish(Message message) throws LogException {
+        ensureOpen();
+        try {
+            service.isArgValid(message);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected(message);
+            throw new LogException("Message processing error", e);
+        }
+        if (message.getSeverity() == Severity.MINOR && queued.get() >= policy.getHighWaterMark() && !sampled()) {
+            shed.increment();
+            return false;
+        }
+        queued.incrementAndGet();
+        accepted.incrementAndGet();
+        try {
+            queues.get(message.getSeverity().ordinal()).put(new Entry(message, System.nanoTime()));
+        } catch (InterruptedException e) {
+            queued.decrementAndGet();
+            completed.incrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new LogException("Message processing error", e);
+        }
+        if (parked) {
+            LockSupport.unpark(drainer);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every message accepted before the call is stored or failed.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void flush() throws InterruptedIOException {
+        long target = accepted.get();
+        while (completed.get() < target && drainer.isAlive()) {
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while flushing pipeline");
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Stops accepting messages, lets the drainer store the queued ones and stops it.
+     * Producers are expected to stop publishing before the call.
+     *
+     * @throws InterruptedIOException if interrupted while waiting for the drainer
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing pipeline");
+        }
+    }
+
+    /**
+     * @param severity {@link Severity} of the queue
+     * @return number of messages of the severity waiting to be stored
+     */
+    public int getQueuedCount(Severity severity) {
+        return queues.get(severity.ordinal()).size();
+    }
+
+    /**
+     * @return number of <code>MINOR</code> messages shed above the high-water mark
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * @return number of valid messages lost because the decorator or the repository failed on them
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Registers the queue depths, the shed and the failed counts as gauges of the metrics passed.
+     *
+     * @param metrics {@link MessageMetrics} to report to
+     */
+    public void bindTo(MessageMetrics metrics) {
+        for (Severity severity : SEVERITIES) {
+            metrics.registerGauge("priority.queued." + severity, () -> getQueuedCount(severity));
+        }
+        metrics.registerGauge("priority.shed", this::getShedCount);
+        metrics.registerGauge("priority.failed", this::getFailedCount);
+    }
+
+    /**
+     * @return <code>true</code> if the <code>MINOR</code> message arriving above the high-water mark is kept
+     */
+    private boolean sampled() {
+        int keepOneIn = policy.getKeepOneIn();
+        return keepOneIn > 0 && minorArrivals.getAndIncrement() % keepOneIn == 0;
+    }
+
+    /**
+     * Drainer loop: takes a batch as the policy says, parks while every queue is empty.
+     */
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            take(batch);
+            if (batch.isEmpty()) {
+                if (closed && queued.get() == 0) {
+                    return;
+                }
+                parked = true;
+                if (queued.get() == 0 && !closed) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                parked = false;
+                continue;
+            }
+            queued.addAndGet(-batch.size());
+            store(batch);
+            completed.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Fills the batch from the queues, highest severity first. Weighted draining goes round the queues
+     * taking up to the weight of each, until the batch is full or the queues are empty.
+     */
+    private void take(List<Entry> batch) {
+        if (policy.getDraining() == PriorityPolicy.Draining.STRICT) {
+            for (int s = SEVERITIES.length - 1; s >= 0 && batch.size() < maxBatchSize; s--) {
+                queues.get(s).drainTo(batch, maxBatchSize - batch.size());
+            }
+            return;
+        }
+        boolean taken = true;
+        while (taken && batch.size() < maxBatchSize) {
+            taken = false;
+            for (int s = SEVERITIES.length - 1; s >= 0 && batch.size() < maxBatchSize; s--) {
+                int weight = policy.getWeight(SEVERITIES[s]);
+                taken |= queues.get(s).drainTo(batch, Math.min(weight, maxBatchSize - batch.size())) > 0;
+            }
+        }
+    }
+
+    /**
+     * Reserves one block of line numbers for the batch, decorates it in order and stores it with one call.
+     * A batch failing its decoration or storage is counted as failed.
+     */
+    private void store(List<Entry> batch) {
+        long start = System.nanoTime();
+        Message[] decorated = new Message[batch.size()];
+        try {
+            int line = service.reserveLines(decorated.length);
+            for (int i = 0; i < decorated.length; i++) {
+                decorated[i] = service.decorate(batch.get(i).message, line + i);
+            }
+            metrics.recordSince(MessageMetrics.DECORATION, start, decorated.length);
+            service.persist(decorated);
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            return;
+        }
+        long now = System.nanoTime();
+        for (Entry entry : batch) {
+            latencies[entry.message.getSeverity().ordinal()].record(now - entry.publishedNanos);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+    }
+
+    /**
+     * Queued message with its publication time.
+     */
+    private static final class Entry {
+        private final Message message;
+        private final long publishedNanos;
+
+        private Entry(Message message, long publishedNanos) {
+            this.message = message;
+            this.publishedNanos = publishedNanos;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.tcs.edu.service;
+
+import com.tcs.edu.decorator.Severity;
+
+/**
+ * The {@code PriorityPolicy} defines how a {@link PriorityMessagePipeline} drains its per-{@link Severity} queues
+ * and when it sheds {@link Severity#MINOR} traffic: once the queued messages of every severity reach the high-water mark,
+ * only one <code>MINOR</code> message in <code>keepOneIn</code> is accepted, none for <code>0</code>.
+ *
+ * <p>Immutable, every <code>with</code> method returns a new policy.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class PriorityPolicy {
+    /**
+     * <code>STRICT</code> drains a severity only when every higher one is empty, sheds nothing.
+     */
+    public static final PriorityPolicy STRICT = new PriorityPolicy(Draining.STRICT, new int[]{1, 4, 16},
+            Integer.MAX_VALUE, 1);
+    /**
+     * <code>WEIGHTED</code> drains 16 <code>MAJOR</code>, 4 <code>REGULAR</code> and 1 <code>MINOR</code> message per round,
+     * sheds nothing.
+     */
+    public static final PriorityPolicy WEIGHTED = new PriorityPolicy(Draining.WEIGHTED, new int[]{1, 4, 16},
+            Integer.MAX_VALUE, 1);
+
+    /**
+     * {@code Draining} names the order queues are drained in.
+     */
+    public enum Draining {
+        /**
+         * Higher severities first, a lower one waits as long as a higher one has messages
+         */
+        STRICT,
+        /**
+         * Round robin over the severities, each taking up to its weight per round, so no severity starves
+         */
+        WEIGHTED
+    }
+
+    private final Draining draining;
+    private final int[] weights;
+    private final int highWaterMark;
+    private final int keepOneIn;
+
+    private PriorityPolicy(Draining draining, int[] weights, int highWaterMark, int keepOneIn) {
+        this.draining = draining;
+        this.weights = weights;
+        this.highWaterMark = highWaterMark;
+        this.keepOneIn = keepOneIn;
+    }
+
+    /**
+     * Switches to {@link Draining#WEIGHTED}.
+     *
+     * @param severity {@link Severity} the weight applies to
+     * @param weight   number of messages of the severity drained per round
+     */
+    public PriorityPolicy withWeight(Severity severity, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        int[] changed = weights.clone();
+        changed[severity.ordinal()] = weight;
+        return new PriorityPolicy(Draining.WEIGHTED, changed, highWaterMark, keepOneIn);
+    }
+
+    /**
+     * @param highWaterMark number of queued messages from which <code>MINOR</code> ones are shed
+     */
+    public PriorityPolicy withMinorShedding(int highWaterMark) {
+        return withMinorSampling(highWaterMark, 0);
+    }
+
+    /**
+     * @param highWaterMark number of queued messages from which <code>MINOR</code> ones are sampled
+     * @param keepOneIn     one <code>MINOR</code> message in <code>keepOneIn</code> is accepted above the mark
+     */
+    public PriorityPolicy withMinorSampling(int highWaterMark, int keepOneIn) {
+        if (highWaterMark <= 0) {
+            throw new IllegalArgumentException("High-water mark must be positive: " + highWaterMark);
+        }
+        if (keepOneIn < 0) {
+            throw new IllegalArgumentException("Sampling rate must not be negative: " + keepOneIn);
+        }
+        return new PriorityPolicy(draining, weights, highWaterMark, keepOneIn);
+    }
+
+    public Draining getDraining() {
+        return draining;
+    }
+
+    public int getWeight(Severity severity) {
+        return weights[severity.ordinal()];
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return one <code>MINOR</code> message in how many is accepted above the high-water mark, <code>0</code> for none
+     */
+    public int getKeepOneIn() {
+        return keepOneIn;
+    }
+}
@@ -0,0 +1,516 @@
+package com.tcs.edu.service;
+
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.LatencyHistogram;
+import com.tcs.edu.metrics.MessageMetrics;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code RingBufferMessagePipeline} is a high-throughput ingestion front-end of {@link OrderedDistinctedMessageService}.
+ * Producers claim slots of a preallocated ring of reusable events with a single atomic increment,
+ * three stages on dedicated threads follow each other around the ring:
+ * validation (the {@link ValidatedMessageService} rules), decoration and persistence.
+ * Each stage takes everything its predecessor has finished at once, so the decoration reserves one block of line numbers
+ * and the persistence stores one batch per pass, and a stage never waits on a lock.
+ *
+ * <p>Events are reused, so publishing allocates nothing. Besides the decorated messages and what the repository keeps,
+ * every persistence pass allocates the arrays of its repository call: {@link com.tcs.edu.repository.MessageRepository#createAll}
+ * takes the batch as a whole array, so a pass shorter than the batch buffer copies it into one of its length,
+ * and returns the ids as a new array.
+ * When the ring is full {@link #publish(Message)} waits for the persistence to free a slot, {@link #tryPublish(Message)} fails.
+ * Line numbers are assigned in ring order and stay unique across the service. Invalid messages are skipped
+ * and counted as rejected, the time from publication to storage is recorded as {@link MessageMetrics#PIPELINE} latency.
+ *
+ * @author Zakhar Starokozhev
+ */
+public final class RingBufferMessagePipeline implements Closeable {
+    /**
+     * <code>DEFAULT_CAPACITY</code> is the ring size used by the short constructor.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    /**
+     * <code>DEFAULT_MAX_BATCH_SIZE</code> is the largest batch stored by the persistence stage at once by default.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final OrderedDistinctedMessageService service;
+    private final MessageMetrics metrics;
+    private final MessageEvent[] events;
+    private final int mask;
+    private final int maxBatchSize;
+    /**
+     * <code>batch</code> collects the decorated messages of a persistence pass
+     */
+    private final Message[] batch;
+    /**
+     * <code>claimed</code> is the last sequence handed to a producer
+     */
+    private final Sequence claimed = new Sequence();
+    /**
+     * <code>published</code> holds per slot the sequence last written to it, a producer publishes by setting it
+     */
+    private final AtomicLongArray published;
+    private final Stage validation;
+    private final Stage decoration;
+    private final Stage persistence;
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param service {@link OrderedDistinctedMessageService} decorating and storing the messages
+     */
+    public RingBufferMessagePipeline(OrderedDistinctedMessageService service) {
+        this(service, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Starts the stage threads.
+     *
+     * @param service      {@link OrderedDistinctedMessageService} decorating and storing the messages
+     * @param capacity     number of events in the ring, a power of two
+     * @param maxBatchSize largest number of messages stored with one repository call
+     */
+    public RingBufferMessagePipeline(OrderedDistinctedMessageService service, int capacity, int maxBatchSize) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Pipeline capacity must be a power of two: " + capacity);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Pipeline batch size must be positive");
+        }
+        this.service = Objects.requireNonNull(service, "Pipeline service must be not NULL");
+        this.metrics = service.getMetrics();
+        this.events = new MessageEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new MessageEvent();
+        }
+        this.mask = capacity - 1;
+        this.maxBatchSize = Math.min(maxBatchSize, capacity);
+        this.batch = new Message[this.maxBatchSize];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.validation = new Stage("validation", null) {
+            @Override
+            long handle(long from, long to) {
+                validate(from, to);
+                return to;
+            }
+        };
+        this.decoration = new Stage("decoration", validation) {
+            @Override
+            long handle(long from, long to) {
+                decorate(from, to);
+                return to;
+            }
+        };
+        this.persistence = new Stage("persistence", decoration) {
+            @Override
+            long handle(long from, long to) {
+                return persist(from, Math.min(to, from + RingBufferMessagePipeline.this.maxBatchSize - 1));
+            }
+
+            @Override
+            long skip(long from, long to) {
+                drop(from, to);
+                for (long sequence = from; sequence <= to; sequence++) {
+                    events[(int) sequence & mask].clear();
+                }
+                Arrays.fill(batch, null);
+                return to;
+            }
+        };
+        validation.thread.start();
+        decoration.thread.start();
+        persistence.thread.start();
+    }
+
+    /**
+     * Claims the next slot and publishes the message to it, waits while the ring is full.
+     *
+     * @param message <code>Message</code> to be proceeded, validated by the pipeline
+     * @throws IllegalStateException if the pipeline is closed or a stage has stopped
+     */
+    public void publish(Message message) {
+        ensureOpen();
+        long sequence = claimed.incrementAndGet();
+        for (int attempt = 0; sequence - events.length > persistence.sequence.get(); attempt++) {
+            ensureRunning();
+            idle(attempt);
+        }
+        write(sequence, message);
+    }
+
+    /**
+     * Publishes the message unless the ring is full.
+     *
+     * @param message <code>Message</code> to be proceeded, validated by the pipeline
+     * @return <code>false</code> if no slot was free
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public boolean tryPublish(Message message) {
+        ensureOpen();
+        long sequence;
+        do {
+            sequence = claimed.get() + 1;
+            if (sequence - events.length > persistence.sequence.get()) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence - 1, sequence));
+        write(sequence, message);
+        return true;
+    }
+
+    /**
+     * Waits until every message published before the call is stored or rejected.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     * @throws IllegalStateException  if a stage has stopped before handling the messages
+     */
+    public void flush() throws InterruptedIOException {
+        long target = claimed.get();
+        for (int attempt = 0; persistence.sequence.get() < target; attempt++) {
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while flushing pipeline");
+            }
+            if (persistence.finished && persistence.sequence.get() < target) {
+                throw new IllegalStateException("Pipeline stopped before handling every message");
+            }
+            ensureRunning();
+            idle(attempt);
+        }
+    }
+
+    /**
+     * Stops accepting messages, lets the stages finish the published ones and stops their threads.
+     * Producers are expected to stop publishing before the call.
+     *
+     * @throws InterruptedIOException if interrupted while waiting for the stages
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        closed = true;
+        try {
+            validation.thread.join();
+            decoration.thread.join();
+            persistence.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing pipeline");
+        }
+    }
+
+    /**
+     * @return number of messages published and not yet stored or rejected
+     */
+    public long getBacklog() {
+        return claimed.get() - persistence.sequence.get();
+    }
+
+    /**
+     * @return number of valid messages lost because a stage, the decorator or the repository failed on them
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Registers the backlog and the failed count as gauges of the metrics passed.
+     *
+     * @param metrics {@link MessageMetrics} to report to
+     */
+    public void bindTo(MessageMetrics metrics) {
+        metrics.registerGauge("pipeline.backlog", this::getBacklog);
+        metrics.registerGauge("pipeline.failed", this::getFailedCount);
+    }
+
+    private void write(long sequence, Message message) {
+        MessageEvent event = events[(int) sequence & mask];
+        event.message = message;
+        event.publishedNanos = System.nanoTime();
+        published.lazySet((int) sequence & mask, sequence);
+    }
+
+    /**
+     * @return last sequence published without gaps after <code>from - 1</code>, <code>from - 1</code> if none
+     */
+    private long lastPublished(long from) {
+        long last = claimed.get();
+        long sequence = from;
+        while (sequence <= last && published.get((int) sequence & mask) == sequence) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+
+    /**
+     * A message the validation fails on unexpectedly is counted as failed, not as rejected.
+     */
+    private void validate(long from, long to) {
+        long start = System.nanoTime();
+        for (long sequence = from; sequence <= to; sequence++) {
+            MessageEvent event = events[(int) sequence & mask];
+            try {
+                service.isArgValid(event.message);
+                event.valid = true;
+            } catch (IllegalArgumentException e) {
+                event.valid = false;
+                metrics.rejected(event.message);
+            } catch (RuntimeException e) {
+                event.valid = false;
+                failed.increment();
+            }
+        }
+        metrics.recordSince(MessageMetrics.VALIDATION, start, (int) (to - from + 1));
+    }
+
+    /**
+     * Reserves one block of line numbers for the valid messages of the run.
+     * A message failing its decoration is counted as failed and leaves its line number unused.
+     */
+    private void decorate(long from, long to) {
+        long start = System.nanoTime();
+        int valid = 0;
+        for (long sequence = from; sequence <= to; sequence++) {
+            if (events[(int) sequence & mask].valid) {
+                valid++;
+            }
+        }
+        int line = valid > 0 ? service.reserveLines(valid) : 0;
+        for (long sequence = from; sequence <= to; sequence++) {
+            MessageEvent event = events[(int) sequence & mask];
+            if (event.valid) {
+                try {
+                    event.decorated = service.decorate(event.message, line++);
+                } catch (RuntimeException e) {
+                    event.valid = false;
+                    failed.increment();
+                }
+            }
+        }
+        metrics.recordSince(MessageMetrics.DECORATION, start, valid);
+    }
+
+    /**
+     * Stores the valid messages of the run with one call, then clears the events for reuse.
+     * The batch buffer is passed as is when full, a partial batch is copied to an array of its length.
+     *
+     * @return last sequence handled
+     */
+    private long persist(long from, long to) {
+        int size = 0;
+        for (long sequence = from; sequence <= to; sequence++) {
+            MessageEvent event = events[(int) sequence & mask];
+            if (event.valid) {
+                batch[size++] = event.decorated;
+            }
+        }
+        if (size > 0) {
+            try {
+                service.persist(size == batch.length ? batch : Arrays.copyOf(batch, size));
+            } catch (RuntimeException e) {
+                failed.add(size);
+            }
+            Arrays.fill(batch, 0, size, null);
+        }
+        LatencyHistogram latency = metrics.latency(MessageMetrics.PIPELINE);
+        long now = System.nanoTime();
+        for (long sequence = from; sequence <= to; sequence++) {
+            MessageEvent event = events[(int) sequence & mask];
+            if (event.valid) {
+                latency.record(now - event.publishedNanos);
+            }
+            event.clear();
+        }
+        return to;
+    }
+
+    /**
+     * Drops the valid messages of a run a stage failed on unexpectedly, counting them as failed.
+     *
+     * @return last sequence dropped
+     */
+    private long drop(long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++) {
+            MessageEvent event = events[(int) sequence & mask];
+            if (event.valid) {
+                event.valid = false;
+                failed.increment();
+            }
+        }
+        return to;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+    }
+
+    /**
+     * A stage finishes on its own only after {@link #close()}, one finished before has died and nothing passes it.
+     */
+    private void ensureRunning() {
+        if (!closed && (validation.finished || decoration.finished || persistence.finished)) {
+            throw new IllegalStateException("Pipeline stage stopped unexpectedly");
+        }
+    }
+
+    /**
+     * Busy spins first, then yields, then parks, so a stage reacts at once under load and sleeps when idle.
+     *
+     * @param attempt number of consecutive idle calls
+     */
+    private static void idle(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else if (attempt < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Reusable slot of the ring, written by its producer and then by each stage in turn.
+     */
+    private static final class MessageEvent {
+        private Message message;
+        private Message decorated;
+        private boolean valid;
+        private long publishedNanos;
+
+        private void clear() {
+            message = null;
+            decorated = null;
+        }
+    }
+
+    /**
+     * Cache line before the value of a {@link Sequence}, superclass fields are laid out before subclass ones.
+     */
+    @SuppressWarnings("unused")
+    private static class LeftPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SequenceValue extends LeftPadding {
+        volatile long value = -1;
+    }
+
+    /**
+     * Sequence padded against false sharing with its neighbours: the value is a plain <code>volatile long</code>
+     * between two cache lines of padding, updated atomically through a {@link VarHandle}.
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends SequenceValue {
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        long p9, p10, p11, p12, p13, p14, p15;
+
+        long get() {
+            return value;
+        }
+
+        long incrementAndGet() {
+            return (long) VALUE.getAndAdd(this, 1L) + 1;
+        }
+
+        boolean compareAndSet(long expected, long next) {
+            return VALUE.compareAndSet(this, expected, next);
+        }
+
+        /**
+         * Release store, ordered after the writes before it without the cost of a volatile write.
+         */
+        void lazySet(long next) {
+            VALUE.setRelease(this, next);
+        }
+    }
+
+    /**
+     * Stage thread following the previous stage, or the producers for the first one.
+     * A stage finishes once the pipeline is closed and everything before it is handled.
+     * A run failing unexpectedly is skipped, its valid messages are counted as failed.
+     */
+    private abstract class Stage implements Runnable {
+        private final Sequence sequence = new Sequence();
+        private final Stage previous;
+        private final Thread thread;
+        private volatile boolean finished;
+
+        private Stage(String name, Stage previous) {
+            this.previous = previous;
+            this.thread = new Thread(this, "message-pipeline-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Handles events <code>from</code> to <code>to</code> inclusive.
+         *
+         * @return last sequence handled
+         */
+        abstract long handle(long from, long to);
+
+        /**
+         * Gives up events <code>from</code> to <code>to</code> after {@link #handle(long, long)} failed on them,
+         * so that the stage keeps following the ring.
+         *
+         * @return last sequence given up
+         */
+        long skip(long from, long to) {
+            return drop(from, to);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long next = 0;
+                int attempt = 0;
+                while (true) {
+                    boolean done = previous == null ? closed : previous.finished;
+                    long available = previous == null ? lastPublished(next) : previous.sequence.get();
+                    if (available >= next) {
+                        long handled;
+                        try {
+                            handled = handle(next, available);
+                        } catch (RuntimeException e) {
+                            handled = skip(next, available);
+                        }
+                        next = handled + 1;
+                        sequence.lazySet(next - 1);
+                        attempt = 0;
+                    } else if (done && (previous != null || claimed.get() < next)) {
+                        return;
+                    } else {
+                        idle(attempt++);
+                    }
+                }
+            } finally {
+                finished = true;
+            }
+        }
+    }
+}
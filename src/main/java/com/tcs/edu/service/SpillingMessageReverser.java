@@ -0,0 +1,173 @@
+package com.tcs.edu.service;
+
+import com.tcs.edu.decorator.Severity;
+import com.tcs.edu.domain.Message;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The {@code SpillingMessageReverser} iterates its input in reverse order with bounded memory.
+ * Input is consumed in chunks of <code>chunkSize</code> messages, every full chunk but the last one
+ * is spilled to a temporary file and read back, newest chunk first, once the in-memory tail is exhausted.
+ * At most one chunk is held in memory at a time.
+ *
+ * <p>The whole input is consumed when the first message is requested.
+ *
+ * @author Zakhar Starokozhev
+ */
+final class SpillingMessageReverser implements Iterator<Message>, Closeable {
+    private static final Severity[] SEVERITIES = Severity.values();
+    private final Iterator<Message> input;
+    private final int chunkSize;
+    private final List<Long> spilledChunks = new ArrayList<>();
+    private Path spillFile;
+    private DataOutputStream spill;
+    private long spillSize;
+    private FileChannel spillReader;
+    private Message[] chunk;
+    private int chunkPosition;
+    private boolean consumed;
+
+    /**
+     * @param input     messages in original order
+     * @param chunkSize number of messages held in memory per chunk
+     */
+    SpillingMessageReverser(Iterator<Message> input, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.input = input;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!consumed) {
+            consume();
+        }
+        while (chunkPosition == 0 && !spilledChunks.isEmpty()) {
+            readChunk(spilledChunks.remove(spilledChunks.size() - 1));
+        }
+        return chunkPosition > 0;
+    }
+
+    @Override
+    public Message next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Message message = chunk[--chunkPosition];
+        chunk[chunkPosition] = null;
+        return message;
+    }
+
+    /**
+     * Removes the spill file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (spill != null) {
+                spill.close();
+            }
+            if (spillReader != null) {
+                spillReader.close();
+            }
+        } finally {
+            if (spillFile != null) {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    /**
+     * Reads the input keeping its last chunk in memory, side effect on {@link #chunk} and {@link #chunkPosition}.
+     */
+    private void consume() {
+        consumed = true;
+        chunk = new Message[chunkSize];
+        try {
+            while (input.hasNext()) {
+                if (chunkPosition == chunkSize) {
+                    writeChunk();
+                }
+                chunk[chunkPosition++] = input.next();
+            }
+            if (spill != null) {
+                spill.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Message spill failed", e);
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        if (spill == null) {
+            spillFile = Files.createTempFile("messages-", ".spill");
+            spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+        }
+        spilledChunks.add(spillSize);
+        for (int i = 0; i < chunkPosition; i++) {
+            Message message = chunk[i];
+            chunk[i] = null;
+            spill.writeByte(message.getSeverity().ordinal());
+            UUID id = message.getId();
+            spill.writeBoolean(id != null);
+            if (id != null) {
+                spill.writeLong(id.getMostSignificantBits());
+                spill.writeLong(id.getLeastSignificantBits());
+            }
+            byte[] body = message.getBody().getBytes(StandardCharsets.UTF_8);
+            spill.writeInt(body.length);
+            spill.write(body);
+            spillSize += 2 + (id != null ? 16 : 0) + Integer.BYTES + body.length;
+        }
+        chunkPosition = 0;
+    }
+
+    /**
+     * Loads a full spilled chunk into {@link #chunk}.
+     *
+     * @param offset position of the chunk in the spill file
+     */
+    private void readChunk(long offset) {
+        try {
+            if (spillReader == null) {
+                spill.close();
+                spillReader = FileChannel.open(spillFile, READ);
+            }
+            spillReader.position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(spillReader)));
+            for (int i = 0; i < chunkSize; i++) {
+                Severity severity = SEVERITIES[in.readByte()];
+                UUID id = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                Message message = new Message(severity, new String(body, StandardCharsets.UTF_8));
+                message.setId(id);
+                chunk[i] = message;
+            }
+            chunkPosition = chunkSize;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Message spill read failed", e);
+        }
+    }
+}
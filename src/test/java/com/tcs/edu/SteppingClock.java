@@ -0,0 +1,43 @@
+package com.tcs.edu;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * UTC clock standing still until the test steps it, forward or back.
+ */
+public final class SteppingClock extends Clock {
+    private volatile Instant now;
+
+    /**
+     * @param now instant the clock starts at
+     */
+    public SteppingClock(Instant now) {
+        this.now = now;
+    }
+
+    /**
+     * @param duration time to move the clock by, negative to move it back
+     */
+    public void step(Duration duration) {
+        now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return now;
+    }
+}
@@ -0,0 +1,264 @@
+package com.tcs.edu.api;
+
+import com.tcs.edu.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the <code>/api/countries</code> endpoints with a fixed number of concurrent workers for a fixed duration.
+ * Every worker repeats a create, get, update and delete cycle on a country of its own, so the workers never conflict.
+ * All workers share one {@link HttpClient}, which keeps its HTTP/1.1 connections alive and reuses them,
+ * so the load measures the requests rather than the TCP handshakes.
+ *
+ * <p>The latency of every successful request is recorded per {@link Operation} into a {@link LatencyHistogram},
+ * a request failing or answering with an unexpected status is counted as an error of its operation,
+ * a failed create ends its cycle. The {@link Report} is written as JSON.
+ *
+ * <p>Against a running backend:
+ * <code>java -cp target/test-classes:target/classes com.tcs.edu.api.CountryApiLoadRunner http://localhost:8080 16 30 target/country-load.json</code>
+ */
+final class CountryApiLoadRunner {
+    private static final String COUNTRIES = "/api/countries/";
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Requests of a cycle with the status expected of each.
+     */
+    enum Operation {
+        CREATE(201),
+        GET(200),
+        UPDATE(200),
+        DELETE(204);
+
+        private final int expectedStatus;
+
+        Operation(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+    }
+
+    private final URI baseUri;
+    private final int concurrency;
+    private final Duration duration;
+    private final String authorization;
+    private final HttpClient client;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    /**
+     * <code>run</code> makes the country names of this runner unique against a backend keeping earlier runs
+     */
+    private final String run = Long.toString(System.nanoTime(), Character.MAX_RADIX);
+
+    /**
+     * Authenticates as <code>admin:admin</code> like {@link CountryApiTests}.
+     *
+     * @param baseUri     backend URI, e.g. <code>http://localhost:8080</code>
+     * @param concurrency number of workers sending requests at the same time
+     * @param duration    time after which the workers start no new cycle
+     */
+    CountryApiLoadRunner(URI baseUri, int concurrency, Duration duration) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Load concurrency must be positive");
+        }
+        this.baseUri = Objects.requireNonNull(baseUri, "Load base URI must be not NULL");
+        this.duration = Objects.requireNonNull(duration, "Load duration must be not NULL");
+        this.concurrency = concurrency;
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Runs the workers and waits for them to finish their last cycle.
+     *
+     * @return {@link Report} of the run
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    Report run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                int worker = i;
+                running.add(workers.submit(() -> work(worker, deadline)));
+            }
+            for (Future<?> future : running) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Load worker failed", e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new Report(System.nanoTime() - start);
+    }
+
+    private void work(int worker, long deadline) {
+        for (int cycle = 0; System.nanoTime() < deadline; cycle++) {
+            String name = "load-" + run + "-" + worker + "-" + cycle;
+            String created = send(Operation.CREATE, request(COUNTRIES)
+                    .header("Content-Type", "application/json")
+                    .POST(json("{\"countryName\": \"" + name + "\"}")));
+            Matcher id = created == null ? null : ID.matcher(created);
+            if (id == null || !id.find()) {
+                continue;
+            }
+            String country = COUNTRIES + id.group(1);
+            send(Operation.GET, request(country).GET());
+            send(Operation.UPDATE, request(country)
+                    .header("Content-Type", "application/json")
+                    .PUT(json("{\"countryName\": \"" + name + "-updated\",\"id\": " + id.group(1) + "}")));
+            send(Operation.DELETE, request(country).DELETE());
+        }
+    }
+
+    /**
+     * @return response body, <code>null</code> if the request failed or got an unexpected status
+     */
+    private String send(Operation operation, HttpRequest.Builder request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != operation.expectedStatus) {
+                errors.get(operation).increment();
+                return null;
+            }
+            latencies.get(operation).record(System.nanoTime() - start);
+            return response.body();
+        } catch (IOException e) {
+            errors.get(operation).increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.get(operation).increment();
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", authorization);
+    }
+
+    private static HttpRequest.BodyPublisher json(String body) {
+        return HttpRequest.BodyPublishers.ofString(body);
+    }
+
+    /**
+     * Throughput and latency percentiles per operation, latencies in microseconds.
+     */
+    final class Report {
+        private final long elapsedNanos;
+
+        private Report(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long getCount(Operation operation) {
+            return latencies.get(operation).getCount();
+        }
+
+        long getErrors(Operation operation) {
+            return errors.get(operation).sum();
+        }
+
+        /**
+         * @return successful requests of the operation per second
+         */
+        double getThroughput(Operation operation) {
+            return getCount(operation) * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param percentile percentile from <code>0</code> to <code>100</code>
+         */
+        long getLatencyMicros(Operation operation, double percentile) {
+            return latencies.get(operation).getValueAtPercentile(percentile) / 1000;
+        }
+
+        /**
+         * @return report as a JSON object with one member per operation
+         */
+        String toJson() {
+            StringBuilder out = new StringBuilder(512);
+            out.append("{\n  \"uri\": \"").append(baseUri).append("\",\n")
+                    .append("  \"concurrency\": ").append(concurrency).append(",\n")
+                    .append("  \"elapsedMillis\": ").append(elapsedNanos / 1_000_000).append(",\n")
+                    .append("  \"operations\": {");
+            Operation[] operations = Operation.values();
+            for (int i = 0; i < operations.length; i++) {
+                Operation operation = operations[i];
+                out.append(i == 0 ? "\n" : ",\n")
+                        .append("    \"").append(operation.name().toLowerCase(Locale.ROOT)).append("\": {")
+                        .append("\"count\": ").append(getCount(operation))
+                        .append(", \"errors\": ").append(getErrors(operation))
+                        .append(", \"throughput\": ").append(String.format(Locale.ROOT, "%.1f", getThroughput(operation)))
+                        .append(", \"p50Micros\": ").append(getLatencyMicros(operation, 50))
+                        .append(", \"p99Micros\": ").append(getLatencyMicros(operation, 99))
+                        .append(", \"p999Micros\": ").append(getLatencyMicros(operation, 99.9))
+                        .append(", \"maxMicros\": ").append(latencies.get(operation).getMax() / 1000)
+                        .append('}');
+            }
+            return out.append("\n  }\n}\n").toString();
+        }
+
+        /**
+         * @param file report file, its directory is created if missing
+         */
+        void write(Path file) throws IOException {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            Files.writeString(file, toJson());
+        }
+    }
+
+    /**
+     * @param args base URI, concurrency, duration in seconds and report file,
+     *             by default <code>http://localhost:8080 8 10 target/country-load.json</code>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+        Path file = Path.of(args.length > 3 ? args[3] : "target/country-load.json");
+        Report report = new CountryApiLoadRunner(uri, concurrency, duration).run();
+        report.write(file);
+        System.out.print(report.toJson());
+    }
+}
@@ -0,0 +1,49 @@
+package com.tcs.edu.api;
+
+import com.tcs.edu.api.CountryApiLoadRunner.Operation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+/**
+ * Runs {@link CountryApiLoadRunner} against a {@link CountryStubServer},
+ * or against the backend at <code>-Dcountry.api.uri</code> if set.
+ */
+public class CountryApiLoadTests {
+    private static final int CONCURRENCY = 8;
+
+    @Test
+    @DisplayName("Concurrent create, get, update and delete cycles are reported per operation")
+    public void loadTest(@TempDir Path directory) throws Exception {
+        String backend = System.getProperty("country.api.uri");
+        try (CountryStubServer stub = backend == null ? new CountryStubServer(CONCURRENCY) : null) {
+            URI uri = stub == null ? URI.create(backend) : stub.getBaseUri();
+            CountryApiLoadRunner.Report report = new CountryApiLoadRunner(uri, CONCURRENCY, Duration.ofSeconds(1)).run();
+            Path file = directory.resolve("country-load.json");
+            report.write(file);
+
+            String json = Files.readString(file);
+            assertAll(
+                    () -> assertThat(report.getCount(Operation.CREATE), greaterThan(0L)),
+                    () -> assertThat(report.getCount(Operation.DELETE), is(report.getCount(Operation.CREATE))),
+                    () -> assertThat(report.getErrors(Operation.CREATE) + report.getErrors(Operation.GET)
+                            + report.getErrors(Operation.UPDATE) + report.getErrors(Operation.DELETE), is(0L)),
+                    () -> assertThat(report.getLatencyMicros(Operation.GET, 50),
+                            lessThanOrEqualTo(report.getLatencyMicros(Operation.GET, 99.9))),
+                    () -> assertThat(report.getThroughput(Operation.UPDATE), greaterThan(0.0)),
+                    () -> assertThat(json, allOf(containsString("\"create\": {\"count\": "),
+                            containsString("\"p999Micros\": "), containsString("\"concurrency\": " + CONCURRENCY))),
+                    () -> assertThat(stub == null ? 0 : stub.getCountryCount(), is(0))
+            );
+        }
+    }
+}
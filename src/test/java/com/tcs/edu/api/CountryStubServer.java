@@ -0,0 +1,176 @@
+package com.tcs.edu.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory stand-in for the <code>/api/countries</code> endpoints of the Dockerised backend,
+ * answering with the status codes {@link CountryApiTests} expects: a repeated name is a <code>500</code>,
+ * an update of a missing country a <code>400</code>. Requests need basic auth as <code>admin:admin</code>.
+ * Listens on an ephemeral loopback port, keep-alive connections are served by a fixed pool of threads.
+ */
+final class CountryStubServer implements AutoCloseable {
+    private static final String PATH = "/api/countries";
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+    private static final Pattern NAME = Pattern.compile("\"countryName\"\\s*:\\s*\"([^\"]*)\"");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Integer, String> countries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * @param threads number of threads serving requests
+     */
+    CountryStubServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * @return base URI of the stub, e.g. <code>http://127.0.0.1:54321</code>
+     */
+    URI getBaseUri() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return number of countries stored
+     */
+    int getCountryCount() {
+        return countries.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (!AUTHORIZATION.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                respond(exchange, 401, null);
+                return;
+            }
+            String tail = exchange.getRequestURI().getPath().substring(PATH.length()).replace("/", "");
+            Integer id;
+            try {
+                id = tail.isEmpty() ? null : Integer.valueOf(tail);
+            } catch (NumberFormatException e) {
+                respond(exchange, 404, null);
+                return;
+            }
+            switch (exchange.getRequestMethod()) {
+                case "POST":
+                    create(exchange, id, nameOf(body));
+                    break;
+                case "GET":
+                    get(exchange, id);
+                    break;
+                case "PUT":
+                    update(exchange, id, nameOf(body));
+                    break;
+                case "DELETE":
+                    delete(exchange, id);
+                    break;
+                default:
+                    respond(exchange, 405, null);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void create(HttpExchange exchange, Integer id, String name) throws IOException {
+        if (id != null || name == null) {
+            respond(exchange, 400, null);
+            return;
+        }
+        int created = nextId.getAndIncrement();
+        if (ids.putIfAbsent(name, created) != null) {
+            respond(exchange, 500, null);
+            return;
+        }
+        countries.put(created, name);
+        respond(exchange, 201, json(created, name));
+    }
+
+    private void get(HttpExchange exchange, Integer id) throws IOException {
+        String name = id == null ? null : countries.get(id);
+        respond(exchange, name == null ? 404 : 200, name == null ? null : json(id, name));
+    }
+
+    private void update(HttpExchange exchange, Integer id, String name) throws IOException {
+        if (id == null || name == null) {
+            respond(exchange, 400, null);
+            return;
+        }
+        synchronized (this) {
+            String old = countries.get(id);
+            if (old == null || !old.equals(name) && ids.putIfAbsent(name, id) != null) {
+                respond(exchange, 400, null);
+                return;
+            }
+            if (!old.equals(name)) {
+                ids.remove(old);
+                countries.put(id, name);
+            }
+        }
+        respond(exchange, 200, json(id, name));
+    }
+
+    private void delete(HttpExchange exchange, Integer id) throws IOException {
+        String name = id == null ? null : countries.remove(id);
+        if (name != null) {
+            ids.remove(name);
+        }
+        respond(exchange, name == null ? 404 : 204, null);
+    }
+
+    /**
+     * @return <code>countryName</code> of the JSON body, <code>null</code> if missing
+     */
+    private static String nameOf(String body) {
+        Matcher matcher = NAME.matcher(body);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String json(int id, String name) {
+        return "{\"id\": " + id + ", \"countryName\": \"" + name + "\"}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
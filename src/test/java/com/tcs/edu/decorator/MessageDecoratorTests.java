@@ -0,0 +1,138 @@
+package com.tcs.edu.decorator;
+
+import com.tcs.edu.SteppingClock;
+import com.tcs.edu.domain.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static com.tcs.edu.decorator.Severity.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageDecoratorTests {
+    private final Instant instant = Instant.parse("2022-05-01T10:15:30.123456Z");
+    private final MessageDecorator quoting = message -> new Message(message.getSeverity(), "'" + message + "'");
+    /**
+     * <code>baselineTimestamp</code> is the timestamp decorator as it was before the chain, with the clock fixed
+     */
+    private final MessageDecorator baselineTimestamp =
+            message -> new Message(message.getSeverity(), String.format("%s %s", instant, message.getBody()));
+
+    @Test
+    @DisplayName("Decorators keep their output format")
+    public void singleDecoratorsOutput() {
+        Message message = new Message(MAJOR, "Sample");
+        assertAll(
+                () -> assertThat(new SeverityMessageDecorator().decorate(message).getBody(), is("Sample (!!!)")),
+                () -> assertThat(new TypographicMessageDecorator(3).decorate(message).getBody(), is("3 Sample")),
+                () -> assertThat(new TypographicMessageDecorator(4).decorate(message).getBody(), is("4 Sample \n---")),
+                () -> assertThat(new TimestampMessageDecorator().decorate(message).getBody(),
+                        matchesPattern("\\d{4}-\\d{2}-\\d{2}T[\\d:.]+Z Sample"))
+        );
+    }
+
+    @Test
+    @DisplayName("Fused chain output is identical to the baseline decorators applied one by one")
+    public void fusedChainOutput() {
+        MessageDecoratorChain chain = MessageDecoratorChain.builder()
+                .append(new SeverityMessageDecorator())
+                .append(quoting)
+                .append(new SeverityMessageDecorator())
+                .append(fixedTimestamps())
+                .append(new TypographicMessageDecorator())
+                .build();
+
+        for (Severity severity : Severity.values()) {
+            for (int line = 1; line <= 4; line++) {
+                Message message = new Message(severity, "Body " + line);
+                Message expected = new SeverityMessageDecorator().decorate(message);
+                expected = quoting.decorate(expected);
+                expected = new SeverityMessageDecorator().decorate(expected);
+                expected = baselineTimestamp.decorate(expected);
+                expected = new TypographicMessageDecorator(line).decorate(expected);
+
+                Message actual = chain.decorate(message, line);
+                assertThat(actual.getBody(), is(expected.getBody()));
+                assertThat(actual.getSeverity(), is(severity));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Typographic decorator created with a line number keeps it inside a chain")
+    public void fixedLineNumberInChain() {
+        MessageDecoratorChain chain = MessageDecoratorChain.builder()
+                .append(new TypographicMessageDecorator(5))
+                .append(new TypographicMessageDecorator())
+                .build();
+        assertAll(
+                () -> assertThat(chain.decorate(new Message(MINOR, "Sample"), 2).getBody(), is("2 5 Sample \n---")),
+                () -> assertThat(chain.decorate(new Message(MINOR, "Sample"), 3).getBody(), is("3 5 Sample"))
+        );
+    }
+
+    @Test
+    @DisplayName("Timestamp is truncated to the precision configured")
+    public void timestampPrecision() {
+        Clock clock = Clock.fixed(instant, ZoneOffset.UTC);
+        Message message = new Message("Sample");
+        assertAll(
+                () -> assertThat(fixedTimestamps().decorate(message).getBody(), is("2022-05-01T10:15:30.123456Z Sample")),
+                () -> assertThat(new TimestampMessageDecorator(new TimestampSource(clock, ChronoUnit.MILLIS))
+                        .decorate(message).getBody(), is("2022-05-01T10:15:30.123Z Sample")),
+                () -> assertThat(new TimestampMessageDecorator(new TimestampSource(clock, ChronoUnit.SECONDS))
+                        .decorate(message).getBody(), is("2022-05-01T10:15:30Z Sample")),
+                () -> assertThat(new TimestampSource(clock, ChronoUnit.MICROS).current(), is("2022-05-01T10:15:30.123456Z")),
+                () -> assertThat(new TimestampSource(clock).current(), is(instant.toString())),
+                () -> assertThrows(IllegalArgumentException.class, () -> new TimestampSource(clock, ChronoUnit.WEEKS))
+        );
+    }
+
+    @Test
+    @DisplayName("Full precision timestamp is reused while the clock reads the same instant")
+    public void fullPrecisionTimestampCached() {
+        SteppingClock clock = new SteppingClock(instant);
+        TimestampSource timestamps = new TimestampSource(clock);
+        String first = timestamps.current();
+        String sameInstant = timestamps.current();
+        clock.step(Duration.ofNanos(1_000));
+        String next = timestamps.current();
+
+        assertAll(
+                () -> assertThat(sameInstant, sameInstance(first)),
+                () -> assertThat(next, is("2022-05-01T10:15:30.123457Z"))
+        );
+    }
+
+    @Test
+    @DisplayName("Rendered timestamp is reused within a tick and refreshed on the next one")
+    public void timestampCachedPerTick() {
+        SteppingClock clock = new SteppingClock(instant);
+        TimestampSource timestamps = new TimestampSource(clock, ChronoUnit.SECONDS);
+        String first = timestamps.current();
+        clock.step(Duration.ofMillis(500));
+        String sameTick = timestamps.current();
+        clock.step(Duration.ofMillis(500));
+        String nextTick = timestamps.current();
+
+        assertAll(
+                () -> assertThat(sameTick, sameInstance(first)),
+                () -> assertThat(nextTick, is("2022-05-01T10:15:31Z"))
+        );
+    }
+
+    private TimestampMessageDecorator fixedTimestamps() {
+        return new TimestampMessageDecorator(
+                new TimestampSource(Clock.fixed(instant, ZoneOffset.UTC)));
+    }
+}
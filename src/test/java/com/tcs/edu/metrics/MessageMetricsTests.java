@@ -0,0 +1,160 @@
+package com.tcs.edu.metrics;
+
+import com.tcs.edu.decorator.TypographicMessageDecorator;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
+import com.tcs.edu.service.Doubling;
+import com.tcs.edu.service.LogException;
+import com.tcs.edu.service.Order;
+import com.tcs.edu.service.OrderedDistinctedMessageService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.tcs.edu.decorator.Severity.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageMetricsTests {
+    @Test
+    @DisplayName("Histogram percentiles stay within the bucket precision")
+    public void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        assertAll(
+                () -> assertThat(histogram.getCount(), is(100_000L)),
+                () -> assertThat(histogram.getMax(), is(100_000L)),
+                () -> assertThat((double) histogram.getValueAtPercentile(50), closeTo(50_000, 50_000 / 32.0)),
+                () -> assertThat((double) histogram.getValueAtPercentile(99), closeTo(99_000, 99_000 / 32.0)),
+                () -> assertThat(histogram.getValueAtPercentile(100), is(100_000L)),
+                () -> assertThat(histogram.getMean(), closeTo(50_000.5, 0.001))
+        );
+    }
+
+    @Test
+    @DisplayName("Histogram merges the values recorded by many threads")
+    public void histogramConcurrentRecording() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService recorders = Executors.newFixedThreadPool(16);
+        try {
+            CompletableFuture<?>[] recorded = new CompletableFuture[16];
+            for (int t = 0; t < recorded.length; t++) {
+                recorded[t] = CompletableFuture.runAsync(() -> {
+                    for (long value = 1; value <= 10_000; value++) {
+                        histogram.record(value);
+                    }
+                }, recorders);
+            }
+            CompletableFuture.allOf(recorded).join();
+        } finally {
+            recorders.shutdown();
+        }
+
+        assertAll(
+                () -> assertThat(histogram.getCount(), is(160_000L)),
+                () -> assertThat((double) histogram.getValueAtPercentile(50), closeTo(5_000, 5_000 / 32.0)),
+                () -> assertThat(histogram.getValueAtPercentile(100), is(10_000L))
+        );
+    }
+
+    @Test
+    @DisplayName("Batches are recorded as one sample of their mean latency per message")
+    public void batchLatencyPerMessage() {
+        MessageMetrics metrics = new MessageMetrics();
+        metrics.recordSince(MessageMetrics.DECORATION, System.nanoTime() - 10_000_000, 10_000);
+        metrics.latency(MessageMetrics.DECORATION).record(1_000_000);
+        metrics.recordSince(MessageMetrics.DECORATION, System.nanoTime(), 0);
+
+        LatencyHistogram histogram = metrics.latency(MessageMetrics.DECORATION);
+        assertAll(
+                () -> assertThat(histogram.getCount(), is(10_001L)),
+                () -> assertThat((double) histogram.getValueAtPercentile(50), closeTo(1_000, 1_000 / 32.0 + 100)),
+                () -> assertThat((double) histogram.getValueAtPercentile(99.9), closeTo(1_000, 1_000 / 32.0 + 100)),
+                () -> assertThat(histogram.getValueAtPercentile(100), is(1_000_000L)),
+                () -> assertThat(histogram.getMean(), closeTo(1_100, 10))
+        );
+    }
+
+    @Test
+    @DisplayName("Service counts processed and rejected messages and reports repository size")
+    public void serviceMetrics() throws LogException {
+        OrderedDistinctedMessageService service = new OrderedDistinctedMessageService(
+                new TypographicMessageDecorator(), new InMemoryMessageRepositoryImpl());
+        service.process(new Message(MAJOR, "First"), new Message(MINOR, "Second"), new Message(MAJOR, "Third"));
+        assertThrows(LogException.class, () -> service.process(new Message(REGULAR, "Valid"), null));
+        service.process(Order.ASC, Doubling.DISTINCT_WINDOW, new Message(MINOR, "Windowed"));
+
+        SortedMap<String, Long> snapshot = service.getMetrics().snapshot();
+        assertAll(
+                () -> assertThat(snapshot, hasEntry("messages.processed.MAJOR", 2L)),
+                () -> assertThat(snapshot, hasEntry("messages.processed.MINOR", 2L)),
+                () -> assertThat(snapshot, hasEntry("messages.rejected.REGULAR", 1L)),
+                () -> assertThat(snapshot, hasEntry("messages.rejected.UNKNOWN", 1L)),
+                () -> assertThat(snapshot, hasEntry("repository.size", 4L)),
+                () -> assertThat(snapshot, hasEntry("repository.size.MAJOR", 2L)),
+                () -> assertThat(snapshot, hasEntry("latency.validation.count", 6L)),
+                () -> assertThat(snapshot, hasEntry("latency.decoration.count", 4L)),
+                () -> assertThat(snapshot, hasEntry("latency.repository.create.count", 4L))
+        );
+    }
+
+    @Test
+    @DisplayName("Text sink prints a timestamped line per metric")
+    public void textSink() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MetricsSink sink = new TextMetricsSink(new PrintStream(out, true, StandardCharsets.UTF_8),
+                Clock.fixed(Instant.parse("2021-01-01T00:00:00Z"), ZoneOffset.UTC));
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+        snapshot.put("b", 2L);
+        snapshot.put("a", 1L);
+
+        sink.publish(snapshot);
+
+        String separator = System.lineSeparator();
+        assertThat(out.toString(StandardCharsets.UTF_8),
+                is("# 2021-01-01T00:00:00Z" + separator + "a 1" + separator + "b 2" + separator));
+    }
+
+    @Test
+    @DisplayName("JMX sink exposes the last snapshot as MBean attributes")
+    public void jmxSink() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObjectName name = new ObjectName(JmxMetricsSink.DEFAULT_NAME);
+        MessageMetrics metrics = new MessageMetrics();
+        metrics.registerGauge("printer.queue.depth", () -> 7);
+        try (JmxMetricsSink sink = new JmxMetricsSink(server, name)) {
+            metrics.processed(new Message(MINOR, "Counted"));
+            metrics.publishTo(sink);
+
+            assertAll(
+                    () -> assertThat(server.getAttribute(name, "messages.processed.MINOR"), is(1L)),
+                    () -> assertThat(server.getAttribute(name, "printer.queue.depth"), is(7L)),
+                    () -> assertThat(server.getMBeanInfo(name).getAttributes().length, is(metrics.snapshot().size())),
+                    () -> assertThat(assertThrows(ReflectionException.class,
+                                    () -> server.invoke(name, "reset", new Object[0], new String[0]))
+                            .getTargetException(), instanceOf(NoSuchMethodException.class))
+            );
+        }
+        assertThat(server.isRegistered(name), is(false));
+    }
+}
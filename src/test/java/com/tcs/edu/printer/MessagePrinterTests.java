@@ -0,0 +1,200 @@
+package com.tcs.edu.printer;
+
+import com.tcs.edu.domain.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessagePrinterTests {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    @Test
+    @DisplayName("Async printer writes every message in order on flush")
+    public void asyncPrinterWritesAllMessages() throws IOException {
+        StringWriter out = new StringWriter();
+        StringBuilder expected = new StringBuilder();
+        try (AsyncMessagePrinter printer = new AsyncMessagePrinter(out, 16, Backpressure.BLOCK)) {
+            for (int i = 0; i < 1_000; i++) {
+                printer.print(new Message("Line " + i));
+                expected.append("Line ").append(i).append(LINE_SEPARATOR);
+            }
+            printer.flush();
+
+            assertAll(
+                    () -> assertThat(out.toString(), is(expected.toString())),
+                    () -> assertThat(printer.getPrintedCount(), is(1_000L)),
+                    () -> assertThat(printer.getDroppedCount(), is(0L))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Async printer drops newest messages when queue is full")
+    public void asyncPrinterDropsNewest() throws IOException, InterruptedException {
+        StalledWriter out = new StalledWriter();
+        try (AsyncMessagePrinter printer = new AsyncMessagePrinter(out, 2, Backpressure.DROP_NEWEST)) {
+            printer.print(new Message("Taken by writer"));
+            out.entered.await();
+            printer.print(new Message("Queued 1"));
+            printer.print(new Message("Queued 2"));
+            printer.print(new Message("Dropped"));
+
+            assertAll(
+                    () -> assertThat(printer.getQueuedCount(), is(2)),
+                    () -> assertThat(printer.getDroppedCount(), is(1L))
+            );
+            out.release.countDown();
+            printer.flush();
+            assertThat(out.toString(), is("Taken by writer" + LINE_SEPARATOR
+                    + "Queued 1" + LINE_SEPARATOR + "Queued 2" + LINE_SEPARATOR));
+        }
+    }
+
+    @Test
+    @DisplayName("Async printer drops oldest messages when queue is full")
+    public void asyncPrinterDropsOldest() throws IOException, InterruptedException {
+        StalledWriter out = new StalledWriter();
+        try (AsyncMessagePrinter printer = new AsyncMessagePrinter(out, 2, Backpressure.DROP_OLDEST)) {
+            printer.print(new Message("Taken by writer"));
+            out.entered.await();
+            printer.print(new Message("Dropped"));
+            printer.print(new Message("Queued 1"));
+            printer.print(new Message("Queued 2"));
+            out.release.countDown();
+            printer.flush();
+
+            assertAll(
+                    () -> assertThat(printer.getDroppedCount(), is(1L)),
+                    () -> assertThat(out.toString(), is("Taken by writer" + LINE_SEPARATOR
+                            + "Queued 1" + LINE_SEPARATOR + "Queued 2" + LINE_SEPARATOR))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Async printer survives an output throwing unchecked exceptions")
+    public void asyncPrinterSurvivesUncheckedFailure() throws IOException {
+        StringWriter written = new StringWriter();
+        boolean[] failing = {true};
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                if (failing[0]) {
+                    throw new UncheckedIOException(new IOException("Disk full"));
+                }
+                written.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AsyncMessagePrinter printer = new AsyncMessagePrinter(out, 1, Backpressure.BLOCK);
+        printer.print(new Message("Lost"));
+        IOException failure = assertThrows(IOException.class, printer::flush);
+        failing[0] = false;
+        for (int i = 0; i < 3; i++) {
+            printer.print(new Message("Line " + i));
+        }
+        printer.close();
+
+        assertAll(
+                () -> assertThat(failure.getCause(), instanceOf(UncheckedIOException.class)),
+                () -> assertThat(printer.getDroppedCount(), is(1L)),
+                () -> assertThat(printer.getPrintedCount(), is(3L)),
+                () -> assertThat(written.toString(), is("Line 0" + LINE_SEPARATOR
+                        + "Line 1" + LINE_SEPARATOR + "Line 2" + LINE_SEPARATOR))
+        );
+    }
+
+    @Test
+    @DisplayName("Closed async printer rejects messages")
+    public void closedAsyncPrinterRejectsMessages() throws IOException {
+        AsyncMessagePrinter printer = new AsyncMessagePrinter(new StringWriter(), 1, Backpressure.BLOCK);
+        printer.close();
+        assertThrows(IllegalStateException.class, () -> printer.print(new Message()));
+    }
+
+    @Test
+    @DisplayName("Rolling file printer rolls segments by size and gzips the rolled ones")
+    public void rollingFilePrinterRollsAndCompresses(@TempDir Path directory) throws IOException {
+        String line = "Строка " + "x".repeat(90) + LINE_SEPARATOR;
+        int lineBytes = line.getBytes(StandardCharsets.UTF_8).length;
+        try (RollingFileMessagePrinter printer = new RollingFileMessagePrinter(
+                directory, "test", 10L * lineBytes, Duration.ofDays(1), true, Clock.systemUTC())) {
+            for (int i = 0; i < 25; i++) {
+                printer.print(new Message(line.substring(0, line.length() - LINE_SEPARATOR.length())));
+            }
+            assertThat(printer.getWrittenBytes(), is(25L * lineBytes));
+        }
+
+        assertAll(
+                () -> assertThat(gunzip(directory.resolve("test-0.log.gz")), is(line.repeat(10))),
+                () -> assertThat(Files.exists(directory.resolve("test-0.log")), is(false)),
+                () -> assertThat(Files.exists(directory.resolve("test-1.log.gz")), is(true)),
+                () -> assertThat(Files.readString(directory.resolve("test-2.log")), is(line.repeat(5)))
+        );
+    }
+
+    private static String gunzip(Path path) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Blocks the first write until released, so the printer queue can be filled deterministically.
+     */
+    private static class StalledWriter extends Writer {
+        private final StringWriter delegate = new StringWriter();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            delegate.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
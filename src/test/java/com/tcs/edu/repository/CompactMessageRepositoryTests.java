@@ -0,0 +1,118 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.domain.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.tcs.edu.decorator.Severity.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+public class CompactMessageRepositoryTests {
+    @Test
+    @DisplayName("Compact storage decodes every message it stored, across arena chunks")
+    public void compactStorageRoundTrip() {
+        CompactMessageRepositoryImpl storage = new CompactMessageRepositoryImpl(Clock.systemUTC(), 64);
+        UUID[] ids = new UUID[5_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = storage.create(new Message(i % 10 == 0 ? MAJOR : MINOR, "Сообщение " + i));
+        }
+        UUID large = storage.create(new Message(REGULAR, "x".repeat(1_000)));
+
+        Message found = storage.findByPrimaryKey(ids[4_321]);
+        List<String> bodies = storage.findAll().stream().map(Message::getBody).collect(Collectors.toList());
+        assertAll(
+                () -> assertThat(found.getBody(), is("Сообщение 4321")),
+                () -> assertThat(found.getId(), is(ids[4_321])),
+                () -> assertThat(found.getSeverity(), is(MINOR)),
+                () -> assertThat(found.getCreatedAt(), notNullValue()),
+                () -> assertThat(storage.findByPrimaryKey(large).getBody().length(), is(1_000)),
+                () -> assertThat(storage.findByPrimaryKey(UUID.randomUUID()), nullValue()),
+                () -> assertThat(bodies.size(), is(5_001)),
+                () -> assertThat(bodies.get(4_999), is("Сообщение 4999")),
+                () -> assertThat(storage.findAllBySeverity(MAJOR).size(), is(500)),
+                () -> assertThat(storage.findAllBySeverity(MAJOR).iterator().next().getId(), is(ids[0])),
+                () -> assertThat(storage.countBySeverity(REGULAR), is(1L))
+        );
+    }
+
+    @Test
+    @DisplayName("Compact storage keeps filling the arena tail after an oversized body")
+    public void compactStorageSmallBodyAfterLarge() {
+        CompactMessageRepositoryImpl storage = new CompactMessageRepositoryImpl(Clock.systemUTC(), 64);
+        UUID first = storage.create(new Message("first"));
+        UUID large = storage.create(new Message("x".repeat(100)));
+        UUID after = storage.create(new Message("after-large"));
+        UUID next = storage.create(new Message("y".repeat(60)));
+
+        assertAll(
+                () -> assertThat(storage.findByPrimaryKey(first).getBody(), is("first")),
+                () -> assertThat(storage.findByPrimaryKey(large).getBody(), is("x".repeat(100))),
+                () -> assertThat(storage.findByPrimaryKey(after).getBody(), is("after-large")),
+                () -> assertThat(storage.findByPrimaryKey(next).getBody(), is("y".repeat(60)))
+        );
+    }
+
+    @Test
+    @DisplayName("Compact storage keeps a message without body apart from an empty one")
+    public void compactStorageNullBody() {
+        CompactMessageRepositoryImpl storage = new CompactMessageRepositoryImpl();
+        UUID none = storage.create(new Message(MAJOR, null));
+        UUID empty = storage.create(new Message(MAJOR, ""));
+
+        assertAll(
+                () -> assertThat(storage.findByPrimaryKey(none).getBody(), nullValue()),
+                () -> assertThat(storage.findByPrimaryKey(none).getSeverity(), is(MAJOR)),
+                () -> assertThat(storage.findByPrimaryKey(empty).getBody(), is("")),
+                () -> assertThat(storage.findAllBySeverity(MAJOR).size(), is(2))
+        );
+    }
+
+    @Test
+    @DisplayName("Compact storage takes the id generator passed")
+    public void compactStorageIdGenerator() {
+        MessageRepository storage = new CompactMessageRepositoryImpl(Clock.systemUTC(),
+                new TimeOrderedIdGenerator(Clock.systemUTC()));
+        UUID id = storage.create(new Message(MINOR, "Time-ordered"));
+        assertAll(
+                () -> assertThat(id.version(), is(7)),
+                () -> assertThat(storage.findByPrimaryKey(id).getBody(), is("Time-ordered"))
+        );
+    }
+
+    @Test
+    @DisplayName("Compact storage pages time ranges and sees only messages stored before the view")
+    public void compactStoragePagesAndViews() {
+        MessageRepository storage = new CompactMessageRepositoryImpl(
+                Clock.fixed(Instant.parse("2021-01-01T00:00:00Z"), ZoneOffset.UTC));
+        Message[] batch = new Message[7];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Message(i % 2 == 0 ? MAJOR : MINOR, "Message " + i);
+        }
+        storage.createAll(batch);
+        Collection<Message> view = storage.findAll();
+        storage.create(new Message(MAJOR, "Late"));
+
+        MessagePage first = storage.findByCreatedAt(MAJOR, Instant.MIN, Instant.MAX, 3, null);
+        MessagePage second = storage.findByCreatedAt(MAJOR, Instant.MIN, Instant.MAX, 3, first.getNextPageToken());
+        assertAll(
+                () -> assertThat(view.size(), is(7)),
+                () -> assertThat(first.getMessages().stream().map(Message::getBody).collect(Collectors.toList()),
+                        contains("Message 0", "Message 2", "Message 4")),
+                () -> assertThat(second.getMessages().stream().map(Message::getBody).collect(Collectors.toList()),
+                        contains("Message 6", "Late")),
+                () -> assertThat(second.hasNextPage(), is(false)),
+                () -> assertThat(storage.findByCreatedAt(Instant.parse("2021-01-01T00:00:01Z"), Instant.MAX, 3, null)
+                        .getMessages(), empty())
+        );
+    }
+}
@@ -0,0 +1,145 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.domain.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.UUID;
+
+import static com.tcs.edu.decorator.Severity.*;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileMessageRepositoryTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Messages survive reopening the log")
+    public void storedMessagesRecoveredAfterRestart() throws IOException {
+        UUID id;
+        Instant createdAt;
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            id = storage.create(new Message(MAJOR, "Persisted Message"));
+            createdAt = storage.findByPrimaryKey(id).getCreatedAt();
+            storage.createAll(new Message[]{new Message(MINOR, "Привет"), new Message(MAJOR)});
+        }
+
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            assertAll(
+                    () -> assertThat(storage.findAll().size(), is(3)),
+                    () -> assertThat(storage.findByPrimaryKey(id).getBody(), is("Persisted Message")),
+                    () -> assertThat(storage.findAllBySeverity(MAJOR).size(), is(2)),
+                    () -> assertThat(storage.findAllBySeverity(MINOR).iterator().next().getBody(), is("Привет")),
+                    () -> assertThat(storage.findByPrimaryKey(id).getCreatedAt(), is(createdAt)),
+                    () -> assertThat(storage.findByCreatedAt(MAJOR, Instant.MIN, Instant.MAX, 10, null)
+                            .getMessages().get(0).getId(), is(id))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Log takes the id generator passed")
+    public void idGeneratorPassed() throws IOException {
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory, 256, 10, 1000,
+                new TimeOrderedIdGenerator(Clock.systemUTC()))) {
+            assertThat(storage.create(new Message(MINOR, "Time-ordered")).version(), is(7));
+        }
+    }
+
+    @Test
+    @DisplayName("Log rolls over to new segments and replays all of them")
+    public void segmentsRolledAndRecovered() throws IOException {
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory, 256, 10, 1000)) {
+            for (int i = 0; i < 50; i++) {
+                storage.create(new Message(REGULAR, "Message " + i));
+            }
+        }
+
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory, 256, 10, 1000)) {
+            assertAll(
+                    () -> assertThat(MessageLogFormat.listSegments(directory).size(), greaterThan(1)),
+                    () -> assertThat(storage.findAll().size(), is(50))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Batch failing partway leaves nothing to replay, even in segments rolled during it")
+    public void failedBatchRolledBack() throws IOException {
+        Message[] batch = new Message[20];
+        for (int i = 0; i < batch.length - 1; i++) {
+            batch[i] = new Message(MINOR, "Rolled back " + i);
+        }
+        batch[batch.length - 1] = new Message(null, "No severity");
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory, 256, 10, 1000)) {
+            storage.create(new Message(MAJOR, "Before"));
+            assertThrows(NullPointerException.class, () -> storage.createAll(batch));
+            assertThat(MessageLogFormat.listSegments(directory).size(), is(1));
+            storage.create(new Message(MAJOR, "After"));
+        }
+
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory, 256, 10, 1000)) {
+            assertAll(
+                    () -> assertThat(storage.findAll().size(), is(2)),
+                    () -> assertThat(storage.findAllBySeverity(MINOR), empty())
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Truncated tail record is cut off on recovery")
+    public void truncatedTailRecordDiscarded() throws IOException {
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            storage.create(new Message(MINOR, "First"));
+            storage.create(new Message(MINOR, "Second"));
+            storage.create(new Message(MAJOR, "Torn by crash"));
+        }
+        Path segment = MessageLogFormat.listSegments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            assertAll(
+                    () -> assertThat(storage.findAll().size(), is(2)),
+                    () -> assertThat(storage.findAllBySeverity(MAJOR), empty())
+            );
+            storage.create(new Message(MAJOR, "Written after recovery"));
+        }
+
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            assertThat(storage.findAllBySeverity(MAJOR).iterator().next().getBody(), is("Written after recovery"));
+        }
+    }
+
+    @Test
+    @DisplayName("Corrupted tail record is cut off on recovery")
+    public void corruptedTailRecordDiscarded() throws IOException {
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            storage.create(new Message(MINOR, "Intact"));
+            storage.create(new Message(MINOR, "Corrupted"));
+        }
+        Path segment = MessageLogFormat.listSegments(directory).get(0);
+        byte[] content = Files.readAllBytes(segment);
+        content[content.length - 1] ^= 0x7F;
+        Files.write(segment, content);
+
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            assertAll(
+                    () -> assertThat(storage.findAll().size(), is(1)),
+                    () -> assertThat(storage.findAll().iterator().next().getBody(), is("Intact"))
+            );
+        }
+    }
+}
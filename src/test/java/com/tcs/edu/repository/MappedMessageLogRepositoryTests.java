@@ -0,0 +1,94 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.domain.Message;
+import com.tcs.edu.service.LogException;
+import com.tcs.edu.service.MessageService;
+import com.tcs.edu.service.OrderedDistinctedMessageService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.tcs.edu.decorator.Severity.*;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedMessageLogRepositoryTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Mapped view reads every message of a multi-segment log")
+    public void mappedLogReadsAllSegments() throws IOException {
+        UUID[] ids = new UUID[100];
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory, 512, 100, 1000)) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = storage.create(new Message(i % 10 == 0 ? MAJOR : MINOR, "Message " + i));
+            }
+        }
+
+        MessageRepository mapped = new MappedMessageLogRepositoryImpl(directory);
+        List<String> bodies = mapped.findAll().stream().map(Message::getBody).collect(Collectors.toList());
+        assertAll(
+                () -> assertThat(bodies.size(), is(100)),
+                () -> assertThat(bodies.get(0), is("Message 0")),
+                () -> assertThat(bodies.get(99), is("Message 99")),
+                () -> assertThat(mapped.findByPrimaryKey(ids[42]).getBody(), is("Message 42")),
+                () -> assertThat(mapped.findByPrimaryKey(ids[42]).getId(), is(ids[42])),
+                () -> assertThat(mapped.findByPrimaryKey(UUID.randomUUID()), nullValue()),
+                () -> assertThat(mapped.findAllBySeverity(MAJOR).size(), is(10)),
+                () -> assertThat(mapped.findAllBySeverity(REGULAR), empty())
+        );
+    }
+
+    @Test
+    @DisplayName("Mapped view ignores a torn tail record")
+    public void mappedLogIgnoresTornTail() throws IOException {
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            storage.create(new Message(MINOR, "Complete"));
+            storage.create(new Message(MINOR, "Torn"));
+        }
+        try (FileChannel channel = FileChannel.open(MessageLogFormat.listSegments(directory).get(0), WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        MessageRepository mapped = new MappedMessageLogRepositoryImpl(directory);
+        assertThat(mapped.findAll().stream().map(Message::getBody).collect(Collectors.toList()), contains("Complete"));
+    }
+
+    @Test
+    @DisplayName("Service reads through the mapped view and cannot write to it")
+    public void serviceUsesMappedLog() throws IOException {
+        try (FileMessageRepositoryImpl storage = new FileMessageRepositoryImpl(directory)) {
+            storage.create(new Message(REGULAR, "Logged earlier"));
+        }
+
+        MessageService service = new OrderedDistinctedMessageService(
+                new TimestampMessageDecorator(), new MappedMessageLogRepositoryImpl(directory));
+        assertAll(
+                () -> assertThat(service.findAllBySeverity(REGULAR).iterator().next().getBody(), is("Logged earlier")),
+                () -> assertThrows(UnsupportedOperationException.class, () -> service.process(new Message()))
+        );
+    }
+
+    @Test
+    @DisplayName("Id index presized from a very large log is capped instead of overflowing")
+    public void idIndexCapacityCapped() {
+        assertAll(
+                () -> assertThat(IdLocationIndex.capacityFor(10), is(16)),
+                () -> assertThat(IdLocationIndex.capacityFor(1_000), is(2_048)),
+                () -> assertThat(IdLocationIndex.capacityFor(1_500_000_000), is(IdLocationIndex.MAX_CAPACITY)),
+                () -> assertThat(IdLocationIndex.capacityFor(Integer.MAX_VALUE), is(IdLocationIndex.MAX_CAPACITY))
+        );
+    }
+}
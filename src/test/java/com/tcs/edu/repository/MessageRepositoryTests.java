@@ -1,17 +1,38 @@
 package com.tcs.edu.repository;
 
+import com.tcs.edu.SteppingClock;
 import com.tcs.edu.decorator.Severity;
 import com.tcs.edu.domain.Message;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.tcs.edu.decorator.Severity.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class MessageRepositoryTests {
     private final MessageRepository storage = new InMemoryMessageRepositoryImpl();
@@ -54,4 +75,343 @@ public class MessageRepositoryTests {
         }
         assertThat(storage.findAllBySeverity(MAJOR).size(), is(2));
     }
+
+    @Test
+    @DisplayName("Save messages in bulk")
+    public void createdInBulkMessagesExistInStorage() {
+        Message[] messages = {new Message(MAJOR, testMessageContent), new Message(MINOR), new Message(MAJOR)};
+        UUID[] ids = storage.createAll(messages);
+
+        assertAll(
+                () -> assertThat(ids.length, is(3)),
+                () -> assertThat(storage.findByPrimaryKey(ids[0]).getBody(), is(testMessageContent)),
+                () -> assertThat(storage.findAllBySeverity(MAJOR).size(), is(2)),
+                () -> assertThat(storage.findAll().size(), is(3))
+        );
+    }
+
+    @Test
+    @DisplayName("Concurrent save keeps every message and severity index consistent")
+    public void concurrentlyCreatedMessagesExistInStorage() throws Exception {
+        int threads = 8;
+        int messagesPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] writers = new Future<?>[threads];
+        try {
+            for (int t = 0; t < threads; t++) {
+                writers[t] = executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        storage.create(new Message(Severity.values()[i % 3], testMessageContent));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = threads * messagesPerThread;
+        assertAll(
+                () -> assertThat(storage.findAll().size(), is(total)),
+                () -> assertThat(storage.findAllBySeverity(MINOR).size()
+                        + storage.findAllBySeverity(REGULAR).size()
+                        + storage.findAllBySeverity(MAJOR).size(), is(total)),
+                () -> assertThat("Every indexed message found by key.", storage.findAllBySeverity(MAJOR).stream()
+                        .allMatch(message -> storage.findByPrimaryKey(message.getId()) == message))
+        );
+    }
+
+    @Test
+    @DisplayName("Time range query is paged in creation order")
+    public void messagesPagedByCreationTime() {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        SteppingClock clock = new SteppingClock(start);
+        MessageRepository storage = new InMemoryMessageRepositoryImpl(clock);
+        for (int i = 0; i < 10; i++) {
+            storage.create(new Message(i % 2 == 0 ? MAJOR : MINOR, "Message " + i));
+            clock.step(Duration.ofSeconds(1));
+        }
+
+        List<String> bodies = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            MessagePage page = storage.findByCreatedAt(start.plusSeconds(2), start.plusSeconds(9), 3, token);
+            page.getMessages().forEach(message -> bodies.add(message.getBody()));
+            token = page.getNextPageToken();
+            pages++;
+        } while (token != null);
+        assertThat(pages, is(3));
+        MessagePage major = storage.findByCreatedAt(MAJOR, start.plusMillis(1), Instant.MAX, 2, null);
+
+        assertAll(
+                () -> assertThat(bodies, contains("Message 2", "Message 3", "Message 4",
+                        "Message 5", "Message 6", "Message 7", "Message 8")),
+                () -> assertThat(major.getMessages().get(0).getBody(), is("Message 2")),
+                () -> assertThat(major.getMessages().get(1).getBody(), is("Message 4")),
+                () -> assertThat(major.hasNextPage(), is(true)),
+                () -> assertThat(storage.findByCreatedAt(start.plusSeconds(20), Instant.MAX, 5, null)
+                        .getNextPageToken(), nullValue()),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> storage.findByCreatedAt(start, Instant.MAX, 5, "not a token"))
+        );
+    }
+
+    @Test
+    @DisplayName("Messages created in the same millisecond keep their order across pages")
+    public void sameMillisecondMessagesPaged() {
+        MessageRepository storage = new InMemoryMessageRepositoryImpl(
+                Clock.fixed(Instant.parse("2021-01-01T00:00:00Z"), ZoneOffset.UTC));
+        Message[] batch = new Message[5];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Message(REGULAR, "Message " + i);
+        }
+        storage.createAll(batch);
+
+        MessagePage first = storage.findByCreatedAt(Instant.MIN, Instant.MAX, 3, null);
+        MessagePage second = storage.findByCreatedAt(Instant.MIN, Instant.MAX, 3, first.getNextPageToken());
+
+        assertAll(
+                () -> assertThat(first.getMessages(), contains(batch[0], batch[1], batch[2])),
+                () -> assertThat(second.getMessages(), contains(batch[3], batch[4])),
+                () -> assertThat(second.hasNextPage(), is(false))
+        );
+    }
+
+    @Test
+    @DisplayName("Retention evicts oldest messages over count and severity quota from every index")
+    public void messagesEvictedByCountAndSeverityQuota() {
+        InMemoryMessageRepositoryImpl storage = new InMemoryMessageRepositoryImpl(RetentionPolicy.UNLIMITED
+                .withMaxCount(5)
+                .withMaxCount(MINOR, 2));
+        UUID[] ids = new UUID[10];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = storage.create(new Message(i < 4 ? MINOR : MAJOR, "Message " + i));
+        }
+
+        assertAll(
+                () -> assertThat(storage.count(), is(5L)),
+                () -> assertThat(storage.findAll().size(), is(5)),
+                () -> assertThat(storage.findByPrimaryKey(ids[4]), nullValue()),
+                () -> assertThat(storage.findByPrimaryKey(ids[5]).getBody(), is("Message 5")),
+                () -> assertThat(storage.countBySeverity(MINOR), is(0L)),
+                () -> assertThat(storage.findAllBySeverity(MINOR).size(), is(0)),
+                () -> assertThat(storage.findAllBySeverity(MAJOR).size(), is(5)),
+                () -> assertThat(storage.findByCreatedAt(Instant.MIN, Instant.MAX, 10, null).getMessages().size(), is(5)),
+                () -> assertThat(storage.getEvictedCount(RetentionPolicy.Limit.SEVERITY_COUNT), is(2L)),
+                () -> assertThat(storage.getEvictedCount(RetentionPolicy.Limit.COUNT), is(3L))
+        );
+    }
+
+    @Test
+    @DisplayName("Retention evicts messages by age, keeping major messages longer, and by body size")
+    public void messagesEvictedByAgeAndBodySize() {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        SteppingClock clock = new SteppingClock(start);
+        InMemoryMessageRepositoryImpl storage = new InMemoryMessageRepositoryImpl(clock, RetentionPolicy.UNLIMITED
+                .withMaxAge(Duration.ofMinutes(1))
+                .withMaxAge(MAJOR, Duration.ofHours(1))
+                .withMaxBodyBytes(16));
+        UUID minor = storage.create(new Message(MINOR, "Привет"));
+        UUID major = storage.create(new Message(MAJOR, "Hi"));
+        clock.step(Duration.ofMinutes(2));
+        storage.create(new Message(REGULAR, "Fresh"));
+
+        assertAll(
+                () -> assertThat(storage.findByPrimaryKey(minor), nullValue()),
+                () -> assertThat(storage.findByPrimaryKey(major).getBody(), is("Hi")),
+                () -> assertThat(storage.getBodyBytes(), is(7L)),
+                () -> assertThat(storage.getEvictedCount(RetentionPolicy.Limit.AGE), is(1L))
+        );
+
+        storage.create(new Message(REGULAR, "Far too much"));
+
+        assertAll(
+                () -> assertThat(storage.findByPrimaryKey(major), nullValue()),
+                () -> assertThat(storage.count(), is(1L)),
+                () -> assertThat(storage.getBodyBytes(), is(12L)),
+                () -> assertThat(storage.getEvictedCount(RetentionPolicy.Limit.BODY_BYTES), is(2L))
+        );
+    }
+
+    @Test
+    @DisplayName("Concurrent inserts share the eviction work and keep the store bounded")
+    public void concurrentInsertsEvicted() throws Exception {
+        InMemoryMessageRepositoryImpl storage = new InMemoryMessageRepositoryImpl(RetentionPolicy.UNLIMITED
+                .withMaxCount(1_000));
+        int threads = 8;
+        int messagesPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Future<?>[] writers = new Future<?>[threads];
+        try {
+            for (int t = 0; t < threads; t++) {
+                writers[t] = executor.submit(() -> {
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        storage.create(new Message(Severity.values()[i % 3], testMessageContent));
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long count = storage.count();
+        assertAll(
+                () -> assertThat(count, lessThanOrEqualTo(1_000L)),
+                () -> assertThat(count, greaterThan(1_000L - threads)),
+                () -> assertThat(storage.countBySeverity(MINOR) + storage.countBySeverity(REGULAR)
+                        + storage.countBySeverity(MAJOR), is(count)),
+                () -> assertThat((long) storage.findAllBySeverity(MINOR).size()
+                        + storage.findAllBySeverity(REGULAR).size() + storage.findAllBySeverity(MAJOR).size(), is(count)),
+                () -> assertThat((long) storage.findByCreatedAt(Instant.MIN, Instant.MAX, 2_000, null)
+                        .getMessages().size(), is(count)),
+                () -> assertThat(storage.getEvictedCount(RetentionPolicy.Limit.COUNT),
+                        is((long) threads * messagesPerThread - count))
+        );
+    }
+
+    @Test
+    @DisplayName("Time-ordered ids increase within a thread, even when the clock stops or steps back")
+    public void timeOrderedIdsIncrease() {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        SteppingClock clock = new SteppingClock(start);
+        IdGenerator generator = new TimeOrderedIdGenerator(clock);
+        UUID[] ids = new UUID[3_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generator.next();
+            if (i == 1_000) {
+                clock.step(Duration.ofMillis(5));
+            } else if (i == 2_000) {
+                clock.step(Duration.ofMillis(-10));
+            }
+        }
+
+        for (int i = 1; i < ids.length; i++) {
+            assertThat("Id " + i + " follows the previous one.", TimeKey.of(ids[i]).compareTo(TimeKey.of(ids[i - 1])) > 0);
+        }
+        assertAll(
+                () -> assertThat(ids[0].version(), is(7)),
+                () -> assertThat(ids[0].variant(), is(2)),
+                () -> assertThat(TimeOrderedIdGenerator.timestampOf(ids[0]), is(start.toEpochMilli())),
+                () -> assertThat(TimeOrderedIdGenerator.timestampOf(ids[1_500]), is(start.toEpochMilli() + 5))
+        );
+    }
+
+    @Test
+    @DisplayName("Repository pages by time with any id generator")
+    public void messagesPagedWithRandomIds() {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        SteppingClock clock = new SteppingClock(start);
+        MessageRepository storage = new InMemoryMessageRepositoryImpl(clock, RetentionPolicy.UNLIMITED, UUID::randomUUID);
+        for (int i = 0; i < 4; i++) {
+            storage.create(new Message(MINOR, "Message " + i));
+            clock.step(Duration.ofSeconds(1));
+        }
+
+        MessagePage page = storage.findByCreatedAt(start.plusSeconds(1), start.plusSeconds(3), 10, null);
+        assertAll(
+                () -> assertThat(page.getMessages().get(0).getBody(), is("Message 1")),
+                () -> assertThat(page.getMessages().get(1).getBody(), is("Message 2")),
+                () -> assertThat(page.getMessages().get(1).getId().version(), is(4)),
+                () -> assertThat(page.getMessages().size(), is(2))
+        );
+    }
+
+    @Test
+    @DisplayName("Term index answers AND and OR queries and forgets evicted messages")
+    public void termIndexFindsMessagesByTerms() {
+        InMemoryMessageRepositoryImpl storage = new InMemoryMessageRepositoryImpl(Clock.systemUTC(),
+                RetentionPolicy.UNLIMITED.withMaxCount(1_000), new TimeOrderedIdGenerator(Clock.systemUTC()), true);
+        for (int i = 0; i < 3_000; i++) {
+            storage.create(new Message(i % 3 == 0 ? MAJOR : MINOR,
+                    "Request " + i + (i % 2 == 0 ? " even" : " odd") + (i % 5 == 0 ? ", Fizz!" : "")));
+        }
+
+        assertAll(
+                () -> assertThat(storage.findAllByTerms(TermMatch.ALL, "request", "2999").size(), is(1)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ALL, "request", "0").size(), is(0)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ALL, "EVEN", "fizz").size(), is(100)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ANY, "2000", "2001", "missing").size(), is(2)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ANY, "even", "fizz").size(), is(600)),
+                () -> assertThat(storage.findAllByTerms(MAJOR, TermMatch.ALL, "odd", "fizz").size(), is(33)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ALL, "Fizz!", "even").size(), is(100)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ALL, "request 2999 odd").size(), is(1)),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ANY, "!!!"), empty()),
+                () -> assertThat(storage.findAllByTerms(TermMatch.ALL, "fizz").iterator().next().getBody(),
+                        is("Request 2000 even, Fizz!")),
+                () -> assertThat(storage.getTermCount(), lessThan(3_000 + 4)),
+                () -> assertThat(storage.getTermIndexBytes(), greaterThan(0L)),
+                () -> assertThrows(UnsupportedOperationException.class,
+                        () -> new InMemoryMessageRepositoryImpl().findAllByTerms(TermMatch.ANY, "request"))
+        );
+    }
+
+    @Test
+    @DisplayName("Change feed pushes new messages by severity and drops what a stalled subscriber has no room for")
+    public void changeFeedPublishesStoredMessages() throws InterruptedException {
+        InMemoryMessageRepositoryImpl storage = new InMemoryMessageRepositoryImpl();
+        storage.create(new Message(MAJOR, "Before subscription"));
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2);
+        storage.changesBySeverity(MAJOR).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Message item) {
+                received.add(item.getBody());
+                delivered.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        storage.create(new Message(MINOR, "Minor"));
+        storage.create(new Message(MAJOR, "Major 1"));
+        storage.createAll(new Message[]{new Message(REGULAR, "Regular"), new Message(MAJOR, "Major 2")});
+        assertThat(delivered.await(5, TimeUnit.SECONDS), is(true));
+
+        MessageFeed feed = new MessageFeed(Runnable::run, 8);
+        feed.publisher(null).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+            }
+
+            @Override
+            public void onNext(Message item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            feed.publish(new Message("Message " + i));
+        }
+        assertAll(
+                () -> assertThat(received, contains("Major 1", "Major 2")),
+                () -> assertThat(feed.getDroppedCount(), is(92L))
+        );
+    }
 }
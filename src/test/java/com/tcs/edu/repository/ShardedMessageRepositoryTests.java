@@ -0,0 +1,61 @@
+package com.tcs.edu.repository;
+
+import com.tcs.edu.domain.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.tcs.edu.decorator.Severity.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+public class ShardedMessageRepositoryTests {
+    @Test
+    @DisplayName("Sharded storage finds every message and pages across shards in creation order")
+    public void shardedStorageTest() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ShardedMessageRepository storage = new ShardedMessageRepository(Clock.systemUTC(), 8, pool);
+            Message[] batch = new Message[1_000];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new Message(i % 4 == 0 ? MAJOR : MINOR, "Message " + i);
+            }
+            UUID[] ids = storage.createAll(batch);
+            UUID single = storage.create(new Message(REGULAR, "Single"));
+
+            List<UUID> paged = new ArrayList<>();
+            String token = null;
+            do {
+                MessagePage page = storage.findByCreatedAt(Instant.EPOCH, Instant.now().plusSeconds(1), 64, token);
+                page.getMessages().forEach(message -> paged.add(message.getId()));
+                token = page.getNextPageToken();
+            } while (token != null);
+            List<UUID> expected = new ArrayList<>(List.of(ids));
+            expected.add(single);
+            assertAll(
+                    () -> assertThat(storage.findByPrimaryKey(ids[123]).getBody(), is("Message 123")),
+                    () -> assertThat(storage.findByPrimaryKey(single).getSeverity(), is(REGULAR)),
+                    () -> assertThat(storage.count(), is(1_001L)),
+                    () -> assertThat(storage.findAll().size(), is(1_001)),
+                    () -> assertThat(storage.findAll().stream().count(), is(1_001L)),
+                    () -> assertThat(storage.findAll().stream().map(Message::getId).collect(Collectors.toList()),
+                            containsInAnyOrder(expected.toArray())),
+                    () -> assertThat(storage.findAllBySeverity(MAJOR).size(), is(250)),
+                    () -> assertThat(storage.countBySeverity(MINOR), is(750L)),
+                    () -> assertThat(paged, equalTo(expected)),
+                    () -> assertThat(storage.findByCreatedAt(MAJOR, Instant.EPOCH, Instant.now().plusSeconds(1), 1_000, null)
+                            .getMessages().size(), is(250))
+            );
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
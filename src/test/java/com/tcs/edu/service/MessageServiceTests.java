@@ -1,25 +1,58 @@
 package com.tcs.edu.service;
 
+import com.tcs.edu.SteppingClock;
 import com.tcs.edu.decorator.MessageDecorator;
 import com.tcs.edu.decorator.TimestampMessageDecorator;
+import com.tcs.edu.decorator.TimestampSource;
+import com.tcs.edu.decorator.TypographicMessageDecorator;
 import com.tcs.edu.domain.Message;
+import com.tcs.edu.metrics.MessageMetrics;
+import com.tcs.edu.repository.CompactMessageRepositoryImpl;
 import com.tcs.edu.repository.InMemoryMessageRepositoryImpl;
 import com.tcs.edu.repository.MessageRepository;
+import com.tcs.edu.repository.RetentionPolicy;
+import com.tcs.edu.repository.TermMatch;
+import com.tcs.edu.repository.TimeOrderedIdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import static com.tcs.edu.decorator.Severity.*;
 import static com.tcs.edu.service.Doubling.DISTINCT;
+import static com.tcs.edu.service.Doubling.DISTINCT_WINDOW;
 import static com.tcs.edu.service.Doubling.DOUBLES;
 import static com.tcs.edu.service.Order.ASC;
 import static com.tcs.edu.service.Order.DESC;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class MessageServiceTests {
+    private static final String PAGE_BREAK = TypographicMessageDecorator.PAGE_DELIMITER;
     private MessageService service;
     private Exception exception;
     private Message[] messages;
@@ -60,6 +93,131 @@ public class MessageServiceTests {
             service.process(DISTINCT, messages);
             assertThat(service.findAll().size(), is(3));
         }
+
+        @Test
+        @DisplayName("Deduplicated processing across calls")
+        public void distinctWindowProcessTest() throws LogException {
+            service.process(DISTINCT_WINDOW, messages);
+            service.process(DISTINCT_WINDOW, new Message(MAJOR, "Test"), new Message(REGULAR, "Sample"));
+            service.process(DESC, DISTINCT_WINDOW, new Message(REGULAR, "Retried"), new Message(MINOR, "Example"));
+            assertThat(service.findAll().size(), is(4));
+        }
+
+        @Test
+        @DisplayName("Invalid message is not recorded in the window")
+        public void distinctWindowValidationTest() {
+            exception = assertThrows(LogException.class,
+                    () -> service.process(DISTINCT_WINDOW, new Message(MAJOR, "Test"), null));
+            assertThat(exception.getCause().getMessage(), equalTo("Null passed instead of Message"));
+            assertThat(((OrderedDistinctedMessageService) service).getDeduplicationWindow().size(), is(0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Deduplication window tests")
+    class DeduplicationWindowTests {
+        @Test
+        @DisplayName("Window forgets the oldest messages beyond its size")
+        public void countBoundedWindowTest() {
+            DeduplicationWindow window = new DeduplicationWindow(2);
+            assertThat(window.firstSeen(new Message("First")), is(true));
+            assertThat(window.firstSeen(new Message("Second")), is(true));
+            assertThat(window.firstSeen(new Message("First")), is(false));
+            assertThat(window.firstSeen(new Message("Third")), is(true));
+            assertThat(window.firstSeen(new Message("First")), is(true));
+            assertThat(window.firstSeen(new Message(MAJOR, "Third")), is(true));
+            assertThat(window.getRepeatCount(), is(1L));
+            assertThat(window.size(), is(2));
+        }
+
+        @Test
+        @DisplayName("Window forgets messages older than its age")
+        public void timeBoundedWindowTest() {
+            Instant start = Instant.parse("2022-05-01T10:15:30Z");
+            SteppingClock clock = new SteppingClock(start);
+            DeduplicationWindow window = new DeduplicationWindow(100, Duration.ofSeconds(10), clock);
+            window.firstSeen(new Message("Retried"));
+            clock.step(Duration.ofSeconds(9));
+            assertThat(window.firstSeen(new Message("Retried")), is(false));
+            clock.step(Duration.ofSeconds(1));
+            assertThat(window.firstSeen(new Message("Retried")), is(true));
+        }
+
+        @Test
+        @DisplayName("Window forgets a single message and keeps the order of the others")
+        public void forgetTest() {
+            DeduplicationWindow window = new DeduplicationWindow(3);
+            window.firstSeen(new Message("First"));
+            window.firstSeen(new Message("Second"));
+            window.firstSeen(new Message("Third"));
+            window.forget(new Message("Second"));
+            window.forget(new Message("Unknown"));
+            assertThat(window.size(), is(2));
+            assertThat(window.firstSeen(new Message("Fourth")), is(true));
+            assertThat(window.firstSeen(new Message("Fifth")), is(true));
+            assertAll(
+                    () -> assertThat(window.size(), is(3)),
+                    () -> assertThat(window.firstSeen(new Message("Third")), is(false)),
+                    () -> assertThat(window.firstSeen(new Message("Second")), is(true)),
+                    () -> assertThat(window.firstSeen(new Message("First")), is(true))
+            );
+        }
+
+        @Test
+        @DisplayName("Window forgets a whole batch and keeps the messages recorded before it")
+        public void forgetAllTest() {
+            DeduplicationWindow window = new DeduplicationWindow(100_000);
+            window.firstSeen(new Message("Before"));
+            Message[] batch = new Message[50_000];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new Message("Batch " + i);
+                window.firstSeen(batch[i]);
+            }
+            window.forgetAll(batch);
+            assertAll(
+                    () -> assertThat(window.size(), is(1)),
+                    () -> assertThat(window.firstSeen(new Message("Before")), is(false)),
+                    () -> assertThat(window.firstSeen(batch[0]), is(true)),
+                    () -> assertThat(window.firstSeen(batch[batch.length - 1]), is(true))
+            );
+        }
+
+        @Test
+        @DisplayName("Messages failing to be stored are not taken for repeats on retry")
+        public void failedStoreRetryTest() throws LogException {
+            boolean[] failing = {true};
+            MessageRepository repository = new InMemoryMessageRepositoryImpl() {
+                @Override
+                public UUID[] createAll(Message... messages) {
+                    if (failing[0]) {
+                        throw new IllegalStateException("Storage unavailable");
+                    }
+                    return super.createAll(messages);
+                }
+            };
+            MessageService retried = new OrderedDistinctedMessageService(new TimestampMessageDecorator(), repository);
+            Message[] batch = {new Message("Retried"), new Message(MAJOR, "Retried too")};
+            assertThrows(IllegalStateException.class, () -> retried.process(ASC, DISTINCT_WINDOW, batch));
+            failing[0] = false;
+            retried.process(ASC, DISTINCT_WINDOW, batch);
+            assertThat(retried.findAll().size(), is(2));
+        }
+
+        @Test
+        @DisplayName("Window keeps working through many evictions")
+        public void windowChurnTest() {
+            DeduplicationWindow window = new DeduplicationWindow(1_000);
+            window.firstSeen(new Message("Message 0"));
+            for (int i = 1; i < 100_000; i++) {
+                assertThat(window.firstSeen(new Message("Message " + i)), is(true));
+                assertThat(window.firstSeen(new Message("Message " + (i - 1))), is(false));
+            }
+            assertAll(
+                    () -> assertThat(window.size(), is(1_000)),
+                    () -> assertThat(window.estimatedFalsePositiveRate(), lessThan(1e-15)),
+                    () -> assertThat(window.memoryBytes(), is(8L * (2048 + 1000)))
+            );
+        }
     }
 
     @Nested
@@ -132,4 +290,383 @@ public class MessageServiceTests {
             assertThat(last.getBody(), allOf(startsWith("2"), containsString("(!)")));
         }
     }
+
+    @Nested
+    @DisplayName("Streaming tests")
+    class StreamingMessageServiceTests {
+        private Message findByContent(String content) {
+            return service.findAll().stream()
+                    .filter(message -> message.getBody().contains(content)).findFirst().get();
+        }
+
+        @Test
+        @DisplayName("Streaming in straight order")
+        public void streamProcessTest() throws LogException {
+            service.process(Stream.of(new Message(MAJOR, "First"), new Message(MINOR, "Second")));
+            assertThat(findByContent("Second").getBody(), allOf(startsWith("2"), endsWith(PAGE_BREAK)));
+        }
+
+        @Test
+        @DisplayName("Streaming in reverse order spills beyond one chunk")
+        public void descStreamProcessTest() throws LogException {
+            int count = OrderedDistinctedMessageService.STREAM_CHUNK_SIZE * 2 + 5;
+            service.process(IntStream.range(0, count).mapToObj(i -> new Message(REGULAR, "Message " + i + ";"))
+                    .iterator(), DESC, DOUBLES);
+
+            assertThat(service.findAll().size(), is(count));
+            assertThat(findByContent("Message " + (count - 1) + ";").getBody(), startsWith("1 "));
+            assertThat(findByContent("Message 0;").getBody(), startsWith(count + " "));
+        }
+
+        @Test
+        @DisplayName("Streaming distinct in reverse order")
+        public void descDistinctStreamProcessTest() throws LogException {
+            Message doubling = new Message(MAJOR, "Test");
+            service.process(Arrays.asList(doubling, doubling, new Message(REGULAR), doubling).iterator(), DESC, DISTINCT);
+            assertThat(service.findAll().size(), is(2));
+            assertThat(findByContent("(!)").getBody(), startsWith("2"));
+        }
+
+        @Test
+        @DisplayName("Streaming throws custom exception on invalid message")
+        public void invalidStreamProcessTest() {
+            exception = assertThrows(LogException.class, () -> service.process(
+                    Arrays.asList(new Message(MINOR, "Valid"), new Message(MINOR, "")).iterator(), DESC, DOUBLES));
+            assertThat(exception.getCause().getMessage(), equalTo("Empty Message passed"));
+            assertThat(service.findAll(), empty());
+        }
+
+        @Test
+        @DisplayName("Streaming throws custom exception on empty stream")
+        public void emptyStreamProcessTest() {
+            exception = assertThrows(LogException.class, () -> service.process(Stream.empty()));
+            assertThat(exception.getCause().getMessage(), equalTo("Empty Messages passed"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Parallel decoration tests")
+    class ParallelMessageServiceTests {
+        private final MessageDecorator decorator = message -> new Message(message.getSeverity(), "[" + message + "]");
+
+        private List<String> processAll(MessageService processor, Message[] batch) throws LogException {
+            processor.process(batch);
+            processor.process(DESC, DISTINCT, batch);
+            processor.process(batch[0]);
+            return processor.findAll().stream().map(Message::getBody).sorted().collect(Collectors.toList());
+        }
+
+        @Test
+        @DisplayName("Parallel processing output is identical to sequential one")
+        public void parallelProcessTest() throws LogException {
+            Message[] batch = IntStream.range(0, OrderedDistinctedMessageService.PARALLEL_THRESHOLD * 3 + 7)
+                    .mapToObj(i -> new Message(values()[i % 3], "Message " + i % 5000))
+                    .toArray(Message[]::new);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                List<String> sequential = processAll(
+                        new OrderedDistinctedMessageService(decorator, new InMemoryMessageRepositoryImpl()), batch);
+                List<String> parallel = processAll(
+                        new OrderedDistinctedMessageService(decorator, new InMemoryMessageRepositoryImpl(), pool), batch);
+                assertThat(parallel, equalTo(sequential));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Lazy decoration tests")
+    class LazyDecorationTests {
+        private final Instant start = Instant.parse("2022-05-01T10:15:30.123Z");
+        private final SteppingClock clock = new SteppingClock(start);
+        private final MessageDecorator decorator = new TimestampMessageDecorator(
+                new TimestampSource(clock, ChronoUnit.MILLIS));
+
+        @Test
+        @DisplayName("Lazily rendered messages are identical to eagerly decorated ones")
+        public void lazyDecorationTest() throws LogException {
+            Message[] batch = IntStream.range(0, 25)
+                    .mapToObj(i -> new Message(values()[i % 3], "Message " + i % 20))
+                    .toArray(Message[]::new);
+            MessageRepository rawRepository = new InMemoryMessageRepositoryImpl();
+            MessageService eager = new OrderedDistinctedMessageService(decorator, new InMemoryMessageRepositoryImpl());
+            MessageService lazy = new OrderedDistinctedMessageService(decorator, rawRepository, Decoration.LAZY);
+            for (MessageService processor : List.of(eager, lazy)) {
+                processor.process(DESC, DISTINCT, batch);
+                processor.process(Stream.of(batch[0], batch[1]));
+            }
+            clock.step(Duration.ofSeconds(60));
+
+            List<String> eagerBodies = eager.findAll().stream().map(Message::getBody).sorted().collect(Collectors.toList());
+            List<String> lazyBodies = lazy.findAll().stream().map(Message::getBody).sorted().collect(Collectors.toList());
+            Message stored = rawRepository.findAllBySeverity(MAJOR).iterator().next();
+            Message rendered = lazy.findById(stored.getId());
+            assertAll(
+                    () -> assertThat(lazyBodies, equalTo(eagerBodies)),
+                    () -> assertThat(lazyBodies.get(0), startsWith("1 2022-05-01T10:15:30.123Z ")),
+                    () -> assertThat(stored.getBody(), not(containsString("2022"))),
+                    () -> assertThat(rendered.getBody(), containsString(" " + stored.getBody() + " (!!!)")),
+                    () -> assertThat(rendered.getId(), equalTo(stored.getId())),
+                    () -> assertThat(lazy.findById(stored.getId()), sameInstance(rendered)),
+                    () -> assertThat(lazy.findAllBySeverity(MAJOR).size(), is(eager.findAllBySeverity(MAJOR).size()))
+            );
+        }
+
+        @Test
+        @DisplayName("Change feed and term queries of the repository see raw messages the service renders")
+        public void lazyRepositoryReadsTest() throws Exception {
+            InMemoryMessageRepositoryImpl rawRepository = new InMemoryMessageRepositoryImpl(Clock.systemUTC(),
+                    RetentionPolicy.UNLIMITED, new TimeOrderedIdGenerator(Clock.systemUTC()), true);
+            OrderedDistinctedMessageService lazy =
+                    new OrderedDistinctedMessageService(decorator, rawRepository, Decoration.LAZY);
+            List<Message> pushed = new CopyOnWriteArrayList<>();
+            CountDownLatch delivered = new CountDownLatch(1);
+            rawRepository.changes().subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(Message item) {
+                    pushed.add(item);
+                    delivered.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            lazy.process(new Message(MAJOR, "Disk full"));
+            assertThat(delivered.await(5, TimeUnit.SECONDS), is(true));
+
+            Message found = rawRepository.findAllByTerms(TermMatch.ALL, "disk").iterator().next();
+            Message rendered = lazy.findAll().iterator().next();
+            assertAll(
+                    () -> assertThat(pushed.get(0).getBody(), is("Disk full")),
+                    () -> assertThat(found.getBody(), is("Disk full")),
+                    () -> assertThat(rawRepository.findAllByTerms(TermMatch.ALL, "2022"), empty()),
+                    () -> assertThat(lazy.render(pushed.get(0)).getBody(), is(rendered.getBody())),
+                    () -> assertThat(lazy.render(found).getBody(), is("1 2022-05-01T10:15:30.123Z Disk full (!!!)"))
+            );
+        }
+
+        @Test
+        @DisplayName("Lazy decoration is refused for decorators that are not segments and rebuilding repositories")
+        public void lazyDecorationRefusedTest() {
+            assertThrows(IllegalArgumentException.class, () -> new OrderedDistinctedMessageService(
+                    message -> message, new InMemoryMessageRepositoryImpl(), Decoration.LAZY));
+            assertThrows(IllegalArgumentException.class, () -> new OrderedDistinctedMessageService(
+                    decorator, new CompactMessageRepositoryImpl(), Decoration.LAZY));
+        }
+    }
+
+    @Nested
+    @DisplayName("Asynchronous service tests")
+    class AsyncMessageServiceTests {
+        private int lineOf(Message stored) {
+            return Integer.parseInt(stored.getBody().substring(0, stored.getBody().indexOf(' ')));
+        }
+
+        @Test
+        @DisplayName("Concurrent submissions are coalesced with contiguous line numbers")
+        public void coalescedSubmitTest() throws Exception {
+            OrderedDistinctedMessageService target =
+                    new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new InMemoryMessageRepositoryImpl());
+            ExecutorService submitters = Executors.newFixedThreadPool(8);
+            List<CompletableFuture<UUID[]>> futures = new ArrayList<>();
+            try (AsyncMessageService async = new AsyncMessageService(target, 2)) {
+                List<CompletableFuture<List<CompletableFuture<UUID[]>>>> threads = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    threads.add(CompletableFuture.supplyAsync(() -> {
+                        List<CompletableFuture<UUID[]>> submitted = new ArrayList<>();
+                        for (int i = 0; i < 500; i++) {
+                            submitted.add(async.submit(new Message(MINOR, "Single"), new Message(MAJOR, "Pair")));
+                        }
+                        return submitted;
+                    }, submitters));
+                }
+                for (CompletableFuture<List<CompletableFuture<UUID[]>>> thread : threads) {
+                    futures.addAll(thread.join());
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                assertThat(async.getBatchCount(), lessThanOrEqualTo(async.getSubmissionCount()));
+            } finally {
+                submitters.shutdown();
+            }
+            List<Integer> lines = new ArrayList<>();
+            for (CompletableFuture<UUID[]> future : futures) {
+                UUID[] ids = future.join();
+                assertThat(ids.length, is(2));
+                int first = lineOf(target.findById(ids[0]));
+                assertThat(lineOf(target.findById(ids[1])), is(first + 1));
+                lines.add(first);
+                lines.add(first + 1);
+            }
+            assertThat(lines.stream().sorted().collect(Collectors.toList()),
+                    equalTo(IntStream.rangeClosed(1, 8000).boxed().collect(Collectors.toList())));
+        }
+
+        @Test
+        @DisplayName("Invalid submission fails alone")
+        public void invalidSubmitTest() throws Exception {
+            OrderedDistinctedMessageService target =
+                    new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new InMemoryMessageRepositoryImpl());
+            try (AsyncMessageService async = new AsyncMessageService(target, 1)) {
+                CompletableFuture<UUID[]> invalid = async.submit(new Message(MINOR, ""));
+                CompletableFuture<UUID[]> valid = async.submit(new Message(MINOR, "Valid"));
+                CompletionException failure = assertThrows(CompletionException.class, invalid::join);
+                assertAll(
+                        () -> assertThat(failure.getCause(), instanceOf(LogException.class)),
+                        () -> assertThat(target.findById(valid.join()[0]).getBody(), startsWith("1 ")),
+                        () -> assertThat(target.getMetrics().getRejectedCount(MINOR), is(1L))
+                );
+            }
+        }
+
+        @Test
+        @DisplayName("Submitted array reused by the caller does not change what is stored")
+        public void submittedArrayReusedTest() throws Exception {
+            OrderedDistinctedMessageService target =
+                    new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new InMemoryMessageRepositoryImpl());
+            List<Runnable> drains = new ArrayList<>();
+            try (AsyncMessageService async = new AsyncMessageService(target, drains::add, 1, 16)) {
+                Message[] buffer = {new Message(MINOR, "First"), new Message(MAJOR, "Second")};
+                CompletableFuture<UUID[]> submitted = async.submit(buffer);
+                CompletableFuture<UUID[]> other = async.submit(new Message(REGULAR, "Other"));
+                buffer[0] = null;
+                buffer[1] = new Message(MAJOR, "Refilled");
+                drains.forEach(Runnable::run);
+                UUID[] ids = submitted.join();
+                assertAll(
+                        () -> assertThat(target.findById(ids[0]).getBody(), containsString("First")),
+                        () -> assertThat(target.findById(ids[1]).getBody(), containsString("Second")),
+                        () -> assertThat(target.findById(other.join()[0]).getBody(), containsString("Other"))
+                );
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Ring buffer pipeline tests")
+    class RingBufferPipelineTests {
+        @Test
+        @DisplayName("Producers wrapping a small ring store every valid message once")
+        public void pipelineTest() throws Exception {
+            OrderedDistinctedMessageService target =
+                    new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new InMemoryMessageRepositoryImpl());
+            ExecutorService producers = Executors.newFixedThreadPool(4);
+            try (RingBufferMessagePipeline pipeline = new RingBufferMessagePipeline(target, 64, 16)) {
+                List<CompletableFuture<Void>> published = new ArrayList<>();
+                for (int p = 0; p < 4; p++) {
+                    published.add(CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < 5_000; i++) {
+                            pipeline.publish(i % 100 == 99 ? new Message(MINOR, "") : new Message(values()[i % 3], "Event " + i));
+                        }
+                    }, producers));
+                }
+                CompletableFuture.allOf(published.toArray(new CompletableFuture[0])).join();
+                pipeline.flush();
+                assertThat(pipeline.getBacklog(), is(0L));
+            } finally {
+                producers.shutdown();
+            }
+            List<Integer> lines = target.findAll().stream()
+                    .map(stored -> Integer.parseInt(stored.getBody().substring(0, stored.getBody().indexOf(' '))))
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertAll(
+                    () -> assertThat(lines, equalTo(IntStream.rangeClosed(1, 19_800).boxed().collect(Collectors.toList()))),
+                    () -> assertThat(target.getMetrics().getRejectedCount(MINOR), is(200L)),
+                    () -> assertThat(target.getMetrics().latency(MessageMetrics.PIPELINE).getCount(), is(19_800L))
+            );
+        }
+
+        @Test
+        @DisplayName("Messages failing a stage unexpectedly are counted as failed and the ring keeps moving")
+        public void pipelineFailureTest() throws Exception {
+            OrderedDistinctedMessageService target =
+                    new OrderedDistinctedMessageService(new TimestampMessageDecorator(), new InMemoryMessageRepositoryImpl());
+            Message broken = new Message(MAJOR, "Broken") {
+                @Override
+                public String getBody() {
+                    throw new IllegalStateException("Body is not readable");
+                }
+            };
+            try (RingBufferMessagePipeline pipeline = new RingBufferMessagePipeline(target, 8, 4)) {
+                for (int i = 0; i < 100; i++) {
+                    pipeline.publish(i % 10 == 0 ? broken : new Message(MINOR, "Event " + i));
+                }
+                pipeline.flush();
+                assertAll(
+                        () -> assertThat(pipeline.getFailedCount(), is(10L)),
+                        () -> assertThat(target.findAll().size(), is(90))
+                );
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Priority pipeline tests")
+    class PriorityPipelineTests {
+        @Test
+        @DisplayName("Queued MAJOR messages overtake a MINOR flood that is shed above the high-water mark")
+        public void priorityPipelineTest() throws Exception {
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            InMemoryMessageRepositoryImpl repository = new InMemoryMessageRepositoryImpl() {
+                @Override
+                public UUID[] createAll(Message[] messages) {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.createAll(messages);
+                }
+            };
+            OrderedDistinctedMessageService target =
+                    new OrderedDistinctedMessageService(new TimestampMessageDecorator(), repository);
+            PriorityMessagePipeline pipeline =
+                    new PriorityMessagePipeline(target, PriorityPolicy.STRICT.withMinorShedding(5), 64, 16);
+            try {
+                pipeline.publish(new Message(MINOR, "Stalled"));
+                entered.await();
+                List<Boolean> accepted = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    accepted.add(pipeline.publish(new Message(MINOR, "Minor " + i)));
+                }
+                accepted.add(pipeline.publish(new Message(REGULAR, "Regular")));
+                accepted.add(pipeline.publish(new Message(MAJOR, "Major")));
+                assertAll(
+                        () -> assertThat(accepted.stream().filter(Boolean::booleanValue).count(), is(7L)),
+                        () -> assertThat(pipeline.getShedCount(), is(5L)),
+                        () -> assertThat(pipeline.getQueuedCount(MINOR), is(5)),
+                        () -> assertThrows(LogException.class, () -> pipeline.publish(new Message(MAJOR, "")))
+                );
+                release.countDown();
+                pipeline.flush();
+            } finally {
+                release.countDown();
+                pipeline.close();
+            }
+            List<String> stored = target.findAll().stream()
+                    .map(Message::getBody)
+                    .sorted(Comparator.comparing(body -> Integer.parseInt(body.substring(0, body.indexOf(' ')))))
+                    .collect(Collectors.toList());
+            assertAll(
+                    () -> assertThat(stored.size(), is(8)),
+                    () -> assertThat(stored.get(0), containsString("Stalled")),
+                    () -> assertThat(stored.get(1), containsString("Major")),
+                    () -> assertThat(stored.get(2), containsString("Regular")),
+                    () -> assertThat(target.getMetrics().latency(MessageMetrics.PIPELINE + ".MAJOR").getCount(), is(1L))
+            );
+        }
+    }
 }